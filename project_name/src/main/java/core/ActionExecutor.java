@@ -0,0 +1,158 @@
+package core;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded executor of the asynchronous actions of a controller: at most
+ * threads actions run at a time and queueSize more wait, further actions are
+ * rejected at once (back-pressure) instead of queuing without limit.
+ *
+ * Actions run on platform threads or, when asked and the runtime has them
+ * (Java 21+), on virtual threads: there is no queue then, up to threads +
+ * queueSize actions run at a time.
+ *
+ * {@link RepositoryController}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class ActionExecutor {
+
+	private final String name;
+	private final int threads;
+	private final int queueSize;
+	private final boolean virtualThreads;
+	private final ExecutorService executor;
+	private final Semaphore permits;
+
+	private final AtomicInteger activeCount = new AtomicInteger();
+	private final AtomicLong rejectedCount = new AtomicLong();
+
+	public ActionExecutor(String name, int threads, int queueSize, boolean virtualThreads) {
+		this.name = name;
+		this.threads = threads;
+		this.queueSize = queueSize;
+		this.permits = new Semaphore(threads + queueSize);
+		ExecutorService executor = virtualThreads ? newVirtualThreadPerTaskExecutor() : null;
+		this.virtualThreads = executor != null;
+		this.executor = executor != null ? executor : Executors.newFixedThreadPool(threads, threadFactory(name));
+	}
+
+	private static ThreadFactory threadFactory(String name) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, name + "-action-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Executors.newVirtualThreadPerTaskExecutor() by reflection, since the
+	 * code is compiled for Java 8.
+	 *
+	 * @return The executor or null if the runtime has no virtual threads
+	 */
+	private static ExecutorService newVirtualThreadPerTaskExecutor() {
+		try {
+			Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) method.invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Run an action, if there is room for it.
+	 *
+	 * @param action
+	 *            The action
+	 * @throws RejectedExecutionException
+	 *             If threads + queueSize actions are in flight or the executor
+	 *             is shut down
+	 */
+	public void execute(Runnable action) throws RejectedExecutionException {
+		if (!permits.tryAcquire()) {
+			rejectedCount.incrementAndGet();
+			throw new RejectedExecutionException(
+					"Controller " + name + " has " + (threads + queueSize) + " actions in flight.");
+		}
+		try {
+			executor.execute(() -> {
+				activeCount.incrementAndGet();
+				try {
+					action.run();
+				} finally {
+					activeCount.decrementAndGet();
+					permits.release();
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			permits.release();
+			rejectedCount.incrementAndGet();
+			throw e;
+		}
+	}
+
+	/**
+	 * Stop accepting actions and wait for the running ones to finish.
+	 *
+	 * @param timeout
+	 *            The maximum time to wait in milliseconds
+	 */
+	public void shutdown(long timeout) {
+		executor.shutdown();
+		try {
+			if (!executor.awaitTermination(timeout, TimeUnit.MILLISECONDS))
+				executor.shutdownNow();
+		} catch (InterruptedException e) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	/**
+	 * @return true if actions run on virtual threads
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * @return The number of running actions
+	 */
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+
+	/**
+	 * @return The number of actions waiting for a thread
+	 */
+	public int getQueuedCount() {
+		return Math.max(0, threads + queueSize - permits.availablePermits() - activeCount.get());
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+}
@@ -0,0 +1,128 @@
+package core;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.Session;
+import org.hibernate.Transaction;
+
+/**
+ * A builder of bulk DML statements (10.2.9. JPQL Bulk Update and Delete),
+ * executed by executeUpdate without loading the entities. The entities
+ * already loaded by the entity manager are not changed; the second-level
+ * cache region of the entity is evicted by Hibernate.
+ *
+ * Large tables can be changed in chunks of ids, {@link BulkBuilder#execute(int)},
+ * each one in its own transaction, so the SQLite write lock is held for a
+ * chunk at a time and readers and other writers get in between.
+ *
+ * {@link UpdateBuilder} {@link DeleteBuilder}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public abstract class BulkBuilder<E extends EntityModel, B extends BulkBuilder<E, B>> extends ConditionalBuilder<E, B> {
+
+	BulkBuilder(Class<E> entityClass, EntityManager entityManager) {
+		super(entityClass, entityManager, new Naming());
+	}
+
+	/**
+	 * Render the statement of this builder with a where clause.
+	 *
+	 * @param whereClause
+	 *            The where clause or an empty string
+	 * @return The statement
+	 */
+	protected abstract String render(String whereClause);
+
+	/**
+	 * The key of a statement of this builder: its class, entity, alias and the
+	 * calls building it.
+	 *
+	 * {@link ConditionalBuilder#getCalls()}
+	 */
+	private List<Object> shape(boolean chunked) {
+		return Arrays.asList(getClass(), getEntityClass(), getAlias(), getCalls(), chunked);
+	}
+
+	/**
+	 * The statement is resolved from the {@link StatementCache} by the shape of
+	 * this builder and rendered only on a cache miss.
+	 *
+	 * @return The statement
+	 */
+	public String statement() {
+		return StatementCache.getInstance().get(shape(false), () -> render(whereClause()));
+	}
+
+	/**
+	 * The statement of a chunk, restricted to the ids in [:id_low, :id_high).
+	 *
+	 * @return The statement
+	 */
+	public String chunkStatement() {
+		return StatementCache.getInstance().get(shape(true), () -> {
+			String range = "AND " + adjustPath("id") + " >= :id_low AND " + adjustPath("id") + " < :id_high";
+			return render(String.join(" ", "WHERE 1 = 1", String.join(" ", getWhere()), range));
+		});
+	}
+
+	/**
+	 * Execute the statement in the current transaction.
+	 *
+	 * @return The number of affected rows
+	 */
+	public int execute() {
+		return bind(getEntityManager().createQuery(statement())).executeUpdate();
+	}
+
+	/**
+	 * Execute the statement in chunks of ids, committing a transaction per
+	 * chunk. The id range is read once; a failed chunk is rolled back and the
+	 * chunks before it stay committed.
+	 *
+	 * @param chunkSize
+	 *            The size of the id range of each chunk
+	 * @return The number of affected rows
+	 * @throws PersistenceException
+	 *             If a transaction is already active
+	 */
+	public int execute(long chunkSize) throws PersistenceException {
+		if (chunkSize < 1)
+			throw new PersistenceException("Invalid chunk size " + chunkSize + ".");
+		Session entityManager = getEntityManager().unwrap(Session.class);
+		if (entityManager.getTransaction().isActive())
+			throw new PersistenceException("Chunked statements run their own transactions.");
+
+		String range = String.join("\n", "SELECT MIN(" + adjustPath("id") + "), MAX(" + adjustPath("id") + ")",
+				"FROM " + getEntityName() + " AS " + getAlias(), whereClause());
+		Object[] bounds = bind(entityManager.createQuery(range, Object[].class)).getSingleResult();
+		if (bounds[0] == null)
+			return 0;
+
+		long low = ((Number) bounds[0]).longValue();
+		long high = ((Number) bounds[1]).longValue();
+		int count = 0;
+		for (long start = low; start <= high; start += chunkSize) {
+			Transaction transaction = entityManager.beginTransaction();
+			try {
+				count += bind(entityManager.createQuery(chunkStatement())).setParameter("id_low", start)
+						.setParameter("id_high", start + chunkSize).executeUpdate();
+				transaction.commit();
+			} catch (RuntimeException e) {
+				if (transaction.isActive())
+					transaction.rollback();
+				throw e;
+			}
+		}
+		return count;
+	}
+
+	public String toString() {
+		return statement();
+	}
+
+}
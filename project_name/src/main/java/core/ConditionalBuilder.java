@@ -0,0 +1,300 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Parameter;
+import javax.persistence.PersistenceException;
+
+/**
+ * The where clause DSL shared by the statement builders of an entity:
+ * {@link QueryBuilder} (select), {@link UpdateBuilder} and
+ * {@link DeleteBuilder} (bulk DML). Conditions return the concrete builder,
+ * so they chain with its own methods.
+ *
+ * Reference: 10.2.5. JPQL WHERE Clause
+ *
+ * @param <E>
+ *            The entity
+ * @param <B>
+ *            The concrete builder
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public abstract class ConditionalBuilder<E extends EntityModel, B extends ConditionalBuilder<E, B>> {
+
+	private Class<E> entityClass;
+	private String alias;
+	private EntityManager entityManager;
+	private Set<String> where = new LinkedHashSet<String>();
+	private Map<String, Object> parameters = new LinkedHashMap<String, Object>();
+	private Naming naming;
+
+	ConditionalBuilder(Class<E> entityClass, EntityManager entityManager, Naming naming) {
+		this.entityClass = entityClass;
+		this.entityManager = entityManager;
+		this.naming = naming;
+		this.alias = naming.nextAlias();
+	}
+
+	/**
+	 * Alias and parameter counters shared by a builder and all of its
+	 * subqueries. Names are given in the order the statement is built, so the
+	 * statement is a pure function of the calls building it and nested
+	 * queries can not collide.
+	 */
+	static class Naming {
+
+		private int aliases = 0;
+		private int parameters = 0;
+		private final List<Object> calls = new ArrayList<Object>();
+
+		String nextAlias() {
+			return "a_" + aliases++;
+		}
+
+		String nextParameterName() {
+			return "p_" + parameters++;
+		}
+
+	}
+
+	/**
+	 * @return this, as the concrete builder
+	 */
+	protected abstract B self();
+
+	protected Class<E> getEntityClass() {
+		return entityClass;
+	}
+
+	protected String getAlias() {
+		return alias;
+	}
+
+	protected String getEntityName() {
+		return getEntityClass().getSimpleName();
+	}
+
+	protected EntityManager getEntityManager() {
+		return entityManager;
+	}
+
+	/**
+	 * @return The conditions of the where clause, for the statement shape
+	 */
+	protected Set<String> getWhere() {
+		return Collections.unmodifiableSet(where);
+	}
+
+	protected String nextAlias() {
+		return naming.nextAlias();
+	}
+
+	/**
+	 * Record a call changing the statement of this builder, with the
+	 * arguments the statement depends on (paths and operators, not values).
+	 *
+	 * @param call
+	 *            The call name and arguments
+	 */
+	protected void record(Object... call) {
+		naming.calls.add(Arrays.asList(alias, Arrays.asList(call)));
+	}
+
+	/**
+	 * The calls recorded by this builder and the builders sharing its naming,
+	 * in order. The statements of a builder are a pure function of them, so
+	 * they key the {@link StatementCache}: hashing them is cheap, since paths
+	 * and operators are mostly string literals, whose hash codes are cached.
+	 *
+	 * @return An immutable snapshot of the calls
+	 */
+	protected List<Object> getCalls() {
+		return Arrays.asList(naming.calls.toArray());
+	}
+
+	/**
+	 * Bind a value to the next parameter name.
+	 *
+	 * @param value
+	 *            The parameter value
+	 * @return The parameter placeholder (ie.: ':p_0')
+	 */
+	protected String addParameter(Object value) {
+		String parameterName = naming.nextParameterName();
+		parameters.put(parameterName, value);
+		return ":" + parameterName;
+	}
+
+	protected String adjustPath(String path) {
+		return getAlias() + "." + path;
+	}
+
+	/**
+	 * Bind the parameters of this builder declared by a query, which may be
+	 * made of a part of the statement only (ie.: its where clause).
+	 *
+	 * @param query
+	 *            A query created from a statement of this builder
+	 * @return The query
+	 */
+	protected <Q extends javax.persistence.Query> Q bind(Q query) {
+		for (Parameter<?> parameter : query.getParameters())
+			if (parameters.containsKey(parameter.getName()))
+				query.setParameter(parameter.getName(), parameters.get(parameter.getName()));
+		return query;
+	}
+
+	private B and(String... clause) {
+		where.add("AND " + String.join(" ", clause));
+		return self();
+	}
+
+	/**
+	 * 10.2.5.5. JPQL Conditional Expression Composition
+	 *
+	 * @param path
+	 *            Path expression
+	 * @param operator
+	 *            IS [NOT] NULL, IS [NOT] EMPTY
+	 * @return this
+	 */
+	public B conditional(String path, String operator) {
+		record("conditional", path, operator);
+		return and(adjustPath(path), operator);
+	}
+
+	public B isNull(String path) {
+		return conditional(path, "IS NULL");
+	}
+
+	public B isNotNull(String path) {
+		return conditional(path, "IS NOT NULL");
+	}
+
+	public B isEmpty(String path) {
+		return conditional(path, "IS EMPTY");
+	}
+
+	public B isNotEmpty(String path) {
+		return conditional(path, "IS NOT EMPTY");
+	}
+
+	/**
+	 * Return a shallow copy of the named parameter value map of the statement.
+	 *
+	 * @return Shallow copy of the named parameter value map of the statement.
+	 */
+	public Map<String, Object> getParameters() {
+		return new LinkedHashMap<String, Object>(parameters);
+	}
+
+	/**
+	 * 10.2.5.5. JPQL Conditional Expression Composition
+	 *
+	 * @param path
+	 *            Path expression
+	 * @param operator
+	 *            =, >, >=, <, <=, <>, [NOT] LIKE, [NOT] IN
+	 * @param value
+	 *            Path expression value
+	 * @return this
+	 */
+	public B conditional(String path, String operator, Object value) {
+		record("conditional", path, operator, ":");
+		return and(adjustPath(path), operator, addParameter(value));
+	}
+
+	public B eq(String path, Object value) {
+		return conditional(path, "=", value);
+	}
+
+	public B gt(String path, Object value) {
+		return conditional(path, ">", value);
+	}
+
+	public B ge(String path, Object value) {
+		return conditional(path, ">=", value);
+	}
+
+	public B lt(String path, Object value) {
+		return conditional(path, "<", value);
+	}
+
+	public B le(String path, Object value) {
+		return conditional(path, "<=", value);
+	}
+
+	public B ne(String path, Object value) {
+		return conditional(path, "<>", value);
+	}
+
+	public B like(String path, Object value) {
+		return conditional(path, "LIKE", value);
+	}
+
+	public B notLike(String path, Object value) {
+		return conditional(path, "NOT LIKE", value);
+	}
+
+	public B in(String path, Object value) {
+		return conditional(path, "IN", value);
+	}
+
+	public B notIn(String path, Object value) {
+		return conditional(path, "NOT IN", value);
+	}
+
+	public B between(String path, Object startValue, Object endValue) {
+		record("between", path);
+		return and(adjustPath(path), "BETWEEN", addParameter(startValue), "AND", addParameter(endValue));
+	}
+
+	/**
+	 * Create a subquery sharing the alias and parameter naming of this builder.
+	 *
+	 * {@link ConditionalBuilder#exists(QueryBuilder)}
+	 *
+	 * @param entityClass
+	 *            The entity class of the subquery
+	 * @return A new query builder
+	 */
+	public <T extends EntityModel> QueryBuilder<T> subquery(Class<T> entityClass) {
+		record("subquery", entityClass);
+		return new QueryBuilder<T>(entityClass, entityManager, naming);
+	}
+
+	/**
+	 * 10.2.5.9. JPQL EXISTS Expressions
+	 *
+	 * @param queryBuilder
+	 *            A subquery created by {@link ConditionalBuilder#subquery(Class)}
+	 * @return this
+	 */
+	public B exists(QueryBuilder<?> queryBuilder) {
+		if (this == queryBuilder)
+			throw new PersistenceException("QueryBuilder parameter " + getAlias() + " can't be itself.");
+		if (naming != ((ConditionalBuilder<?, ?>) queryBuilder).naming)
+			throw new PersistenceException("QueryBuilder parameter " + queryBuilder.getAlias()
+					+ " must be created by subquery(Class) to have unique alias and parameter names.");
+		record("exists", queryBuilder.getAlias());
+		and("EXISTS", ("(" + queryBuilder + ")").replace('\n', ' '));
+		parameters.putAll(queryBuilder.getParameters());
+		return self();
+	}
+
+	public String whereClause() {
+		if (where.size() == 0)
+			return "";
+		return "WHERE 1 = 1 " + String.join(" ", where);
+	}
+
+}
@@ -0,0 +1,306 @@
+package core;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.logging.Logger;
+
+/**
+ * A bounded pool of JDBC connections.
+ *
+ * <ul>
+ * <li>At most maxSize connections are open, minSize are opened upfront.</li>
+ * <li>Borrowers wait up to acquireTimeout milliseconds for a connection.</li>
+ * <li>Connections idle for validationIdleThreshold milliseconds or more are
+ * validated before being lent again, the others are lent without a round
+ * trip to the database (0 validates all).</li>
+ * <li>Connections borrowed for longer than leakDetectionThreshold
+ * milliseconds are reported once with the stack trace of the borrower, by a
+ * periodic check off the borrowing path.</li>
+ * </ul>
+ *
+ * {@link SQLiteConnectionProvider}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class ConnectionPool {
+
+	private static final Logger LOG = Logger.getLogger(ConnectionPool.class);
+
+	private static final ScheduledExecutorService LEAK_DETECTOR = Executors.newSingleThreadScheduledExecutor(task -> {
+		Thread thread = new Thread(task, "connection-pool-leak-detector");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/**
+	 * Opens the physical connections of a pool.
+	 */
+	public interface ConnectionFactory {
+
+		Connection create() throws SQLException;
+
+	}
+
+	private static class Borrow {
+
+		private final long time = System.currentTimeMillis();
+		private final Throwable stackTrace;
+		private final AtomicBoolean reported = new AtomicBoolean();
+
+		private Borrow(boolean traced) {
+			this.stackTrace = traced ? new Throwable("Connection borrowed here") : null;
+		}
+
+	}
+
+	private static class Idle {
+
+		private final Connection connection;
+		private final long since = System.currentTimeMillis();
+
+		private Idle(Connection connection) {
+			this.connection = connection;
+		}
+
+	}
+
+	private String name;
+	private ConnectionFactory factory;
+	private int minSize;
+	private int maxSize;
+	private long acquireTimeout;
+	private long leakDetectionThreshold;
+	private int validationTimeout;
+	private long validationIdleThreshold;
+
+	private final Semaphore permits;
+	private final BlockingDeque<Idle> idle = new LinkedBlockingDeque<Idle>();
+	private final Map<Connection, Borrow> active = new ConcurrentHashMap<Connection, Borrow>();
+
+	private final AtomicInteger size = new AtomicInteger();
+	private final AtomicLong acquiredCount = new AtomicLong();
+	private final AtomicLong createdCount = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+	private final AtomicLong invalidCount = new AtomicLong();
+	private final AtomicLong leakCount = new AtomicLong();
+
+	private volatile boolean closed = false;
+	private ScheduledFuture<?> leakDetection;
+
+	public ConnectionPool(String name, ConnectionFactory factory, int minSize, int maxSize, long acquireTimeout,
+			long leakDetectionThreshold, int validationTimeout, long validationIdleThreshold) throws SQLException {
+		if (maxSize < 1 || minSize > maxSize)
+			throw new IllegalArgumentException("Invalid size [" + minSize + ", " + maxSize + "] of pool " + name);
+		this.name = name;
+		this.factory = factory;
+		this.minSize = minSize;
+		this.maxSize = maxSize;
+		this.acquireTimeout = acquireTimeout;
+		this.leakDetectionThreshold = leakDetectionThreshold;
+		this.validationTimeout = validationTimeout;
+		this.validationIdleThreshold = validationIdleThreshold;
+		this.permits = new Semaphore(maxSize, true);
+
+		for (int i = 0; i < minSize; i++)
+			idle.add(new Idle(create()));
+		if (leakDetectionThreshold > 0)
+			leakDetection = LEAK_DETECTOR.scheduleAtFixedRate(this::detectLeaks, leakDetectionThreshold,
+					leakDetectionThreshold, TimeUnit.MILLISECONDS);
+	}
+
+	private Connection create() throws SQLException {
+		Connection connection = factory.create();
+		size.incrementAndGet();
+		createdCount.incrementAndGet();
+		return connection;
+	}
+
+	private void destroy(Connection connection) {
+		size.decrementAndGet();
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			LOG.warnf(e, "Could not close a connection of pool %s", name);
+		}
+	}
+
+	private boolean isValid(Connection connection) {
+		try {
+			return connection.isValid(validationTimeout);
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Borrow a connection, waiting for one to be given back if maxSize are
+	 * borrowed.
+	 *
+	 * @return A connection
+	 * @throws SQLException
+	 *             If no connection is available within acquireTimeout
+	 */
+	public Connection borrow() throws SQLException {
+		if (closed)
+			throw new SQLException("Connection pool " + name + " is closed.");
+
+		try {
+			if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+				timeoutCount.incrementAndGet();
+				throw new SQLException("Connection pool " + name + " has no connection available after "
+						+ acquireTimeout + " ms (" + active.size() + " borrowed).");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted while waiting for a connection of pool " + name, e);
+		}
+
+		try {
+			Connection connection = null;
+			long now = System.currentTimeMillis();
+			for (Idle next; connection == null && (next = idle.pollFirst()) != null;) {
+				if (now - next.since < validationIdleThreshold || isValid(next.connection)) {
+					connection = next.connection;
+				} else {
+					invalidCount.incrementAndGet();
+					destroy(next.connection);
+				}
+			}
+			if (connection == null)
+				connection = create();
+			active.put(connection, new Borrow(leakDetectionThreshold > 0));
+			acquiredCount.incrementAndGet();
+			return connection;
+		} catch (SQLException | RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Give back a borrowed connection, rolling back any pending work.
+	 *
+	 * @param connection
+	 *            A connection given by {@link ConnectionPool#borrow()}
+	 */
+	public void giveBack(Connection connection) {
+		if (active.remove(connection) == null)
+			throw new IllegalStateException("Connection was not borrowed from pool " + name);
+
+		try {
+			if (!connection.getAutoCommit())
+				connection.rollback();
+			connection.clearWarnings();
+			if (closed)
+				destroy(connection);
+			else
+				idle.offerFirst(new Idle(connection));
+		} catch (SQLException e) {
+			invalidCount.incrementAndGet();
+			destroy(connection);
+		} finally {
+			permits.release();
+		}
+	}
+
+	/**
+	 * Report the connections borrowed for longer than leakDetectionThreshold,
+	 * run every leakDetectionThreshold milliseconds.
+	 */
+	public void detectLeaks() {
+		if (leakDetectionThreshold <= 0)
+			return;
+		long now = System.currentTimeMillis();
+		for (Borrow borrow : active.values()) {
+			if (now - borrow.time > leakDetectionThreshold && borrow.reported.compareAndSet(false, true)) {
+				leakCount.incrementAndGet();
+				LOG.warnf(borrow.stackTrace, "Connection of pool %s borrowed for more than %d ms, possible leak", name,
+						leakDetectionThreshold);
+			}
+		}
+	}
+
+	public boolean owns(Connection connection) {
+		return active.containsKey(connection);
+	}
+
+	/**
+	 * Close the idle connections and the borrowed ones once given back.
+	 */
+	public void close() {
+		closed = true;
+		if (leakDetection != null)
+			leakDetection.cancel(false);
+		Idle next;
+		while ((next = idle.pollFirst()) != null)
+			destroy(next.connection);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getMinSize() {
+		return minSize;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return The number of open connections
+	 */
+	public int getSize() {
+		return size.get();
+	}
+
+	public int getActiveCount() {
+		return active.size();
+	}
+
+	public int getIdleCount() {
+		return idle.size();
+	}
+
+	/**
+	 * @return The number of threads waiting for a connection
+	 */
+	public int getWaitingCount() {
+		return permits.getQueueLength();
+	}
+
+	public long getAcquiredCount() {
+		return acquiredCount.get();
+	}
+
+	public long getCreatedCount() {
+		return createdCount.get();
+	}
+
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+	public long getInvalidCount() {
+		return invalidCount.get();
+	}
+
+	public long getLeakCount() {
+		return leakCount.get();
+	}
+
+}
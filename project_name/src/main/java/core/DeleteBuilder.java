@@ -0,0 +1,37 @@
+package core;
+
+import javax.persistence.EntityManager;
+
+/**
+ * A bulk delete statement builder.
+ *
+ * <code>
+ * int count = new DeleteBuilder<Message>(Message.class, entityManager).lt("dateCreated", date).execute(1000);
+ * // DELETE FROM Message AS a_0
+ * // WHERE 1 = 1 AND a_0.dateCreated < :p_0 AND a_0.id >= :id_low AND a_0.id < :id_high
+ * </code>
+ *
+ * {@link BulkBuilder}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class DeleteBuilder<E extends EntityModel> extends BulkBuilder<E, DeleteBuilder<E>> {
+
+	public DeleteBuilder(Class<E> entityClass, EntityManager entityManager) {
+		super(entityClass, entityManager);
+	}
+
+	@Override
+	protected DeleteBuilder<E> self() {
+		return this;
+	}
+
+	/**
+	 * @return DELETE FROM entity AS alias [whereClause]
+	 */
+	@Override
+	protected String render(String whereClause) {
+		return String.join("\n", "DELETE FROM " + getEntityName() + " AS " + getAlias(), whereClause);
+	}
+
+}
@@ -1,8 +1,10 @@
 package core;
 
 import java.text.ParseException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.hibernate.Criteria;
 import org.hibernate.QueryException;
@@ -11,11 +13,14 @@ import org.hibernate.criterion.Conjunction;
 import org.hibernate.criterion.Criterion;
 import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projection;
+import org.hibernate.criterion.Projections;
 import org.hibernate.criterion.Restrictions;
+import org.hibernate.transform.ResultTransformer;
 import org.hibernate.type.Type;
 
-import util.DateUtil;
-import util.Parser;
+import util.DayBoundaries;
+import util.Converters;
 
 /**
  * 
@@ -29,9 +34,16 @@ import util.Parser;
  */
 public class EntityFilter<E extends EntityModel> {
 
+	/**
+	 * Ids deleted by statement, under the SQLite limit of 999 parameters.
+	 */
+	private static final int DELETE_CHUNK_SIZE = 500;
+
 	private Class<E> entityClass;
 	private Criteria criteria;
 	private Session entityManager;
+	private Integer maxResults;
+	private ResultTransformer resultTransformer = Criteria.ROOT_ENTITY;
 
 	@SuppressWarnings("deprecation")
 	public EntityFilter(Class<E> entityClass, Session entityManager) {
@@ -58,7 +70,7 @@ public class EntityFilter<E extends EntityModel> {
 	 * @throws ParseException
 	 */
 	public Object parseValue(String propertyName, Object value) throws QueryException {
-		return parseValue(getPropertyType(propertyName), value);
+		return getPropertyPath(propertyName).parseValue(value);
 	}
 
 	/**
@@ -73,15 +85,18 @@ public class EntityFilter<E extends EntityModel> {
 	 */
 	public Object parseValue(Type propertyType, Object value) throws QueryException {
 		try {
-			return Parser.parseValue(propertyType.getReturnedClass(), value);
+			return Converters.convert(propertyType.getReturnedClass(), value);
 		} catch (ParseException e) {
-			e.printStackTrace();
 			throw new QueryException(e);
 		}
 	}
 
 	public Type getPropertyType(String propertyName) throws QueryException {
-		return HibernateUtil.getPropertyType(entityClass, propertyName, entityManager.getSessionFactory());
+		return getPropertyPath(propertyName).getType();
+	}
+
+	public PropertyTypeIndex.PropertyPath getPropertyPath(String propertyName) throws QueryException {
+		return PropertyTypeIndex.of(entityManager.getSessionFactory()).get(entityClass, propertyName);
 	}
 
 	public EntityFilter<E> add(Criterion expression) {
@@ -93,13 +108,21 @@ public class EntityFilter<E extends EntityModel> {
 		return add(Restrictions.like(propertyName, parseValue(propertyName, value)));
 	}
 
+	/**
+	 * Restrict a property to a range of values, inclusive. Date values are
+	 * widened to whole days, as the half-open range [start of the low day,
+	 * start of the day after the high day), which an index on the property
+	 * can serve.
+	 */
 	public EntityFilter<E> between(String propertyName, Object lowValue, Object highValue) throws QueryException {
-		lowValue = parseValue(propertyName, lowValue);
-		highValue = parseValue(propertyName, highValue);
-
-		if (getPropertyType(propertyName).getReturnedClass().equals(Date.class)) {
-			lowValue = DateUtil.lowDateTime((Date) lowValue);
-			highValue = DateUtil.highDateTime((Date) highValue);
+		PropertyTypeIndex.PropertyPath path = getPropertyPath(propertyName);
+		lowValue = path.parseValue(lowValue);
+		highValue = path.parseValue(highValue);
+
+		if (path.getReturnedClass().equals(Date.class)) {
+			DayBoundaries days = DayBoundaries.systemDefault();
+			return add(Restrictions.ge(propertyName, new Date(days.startOfDay(((Date) lowValue).getTime()))))
+					.add(Restrictions.lt(propertyName, new Date(days.nextDayStart(((Date) highValue).getTime()))));
 		}
 
 		return add(Restrictions.between(propertyName, lowValue, highValue));
@@ -161,14 +184,105 @@ public class EntityFilter<E extends EntityModel> {
 
 	public EntityFilter<E> setMaxResults(int maxResults) throws QueryException {
 		criteria.setMaxResults(maxResults);
+		this.maxResults = maxResults;
 		return this;
 	}
 
+	public EntityFilter<E> setResultTransformer(ResultTransformer resultTransformer) {
+		criteria.setResultTransformer(resultTransformer);
+		this.resultTransformer = resultTransformer;
+		return this;
+	}
+
+	/**
+	 * Run the criteria with a projection, then restore it to list entities
+	 * with the result transformer set before.
+	 */
+	private List<?> project(Projection projection, Integer maxResults) {
+		try {
+			criteria.setProjection(projection);
+			if (maxResults != null)
+				criteria.setMaxResults(maxResults);
+			return criteria.list();
+		} finally {
+			criteria.setProjection(null);
+			criteria.setResultTransformer(resultTransformer);
+			if (maxResults != null)
+				criteria.setMaxResults(this.maxResults != null ? this.maxResults : 0);
+		}
+	}
+
+	/**
+	 * Count the entities of this filter by SELECT COUNT(*), without loading
+	 * them.
+	 *
+	 * @return The number of entities
+	 */
+	public long count() {
+		return ((Number) project(Projections.rowCount(), null).get(0)).longValue();
+	}
+
+	/**
+	 * Check if this filter has any entity by selecting one id, without loading
+	 * it.
+	 *
+	 * @return true if an entity matches
+	 */
+	public boolean exists() {
+		return !project(Projections.id(), 1).isEmpty();
+	}
+
+	/**
+	 * Delete the entities of this filter without loading them: their ids are
+	 * selected and deleted by bulk DELETE statements of up to 500 ids.
+	 *
+	 * {@link QueryBuilder#deleteWhere()}
+	 *
+	 * @return The number of deleted entities
+	 */
+	public int deleteWhere() {
+		List<?> ids = project(Projections.id(), null);
+		String statement = "DELETE FROM " + entityClass.getSimpleName() + " WHERE id IN (:ids)";
+		int count = 0;
+		for (int i = 0; i < ids.size(); i += DELETE_CHUNK_SIZE) {
+			List<?> chunk = new ArrayList<Object>(ids.subList(i, Math.min(i + DELETE_CHUNK_SIZE, ids.size())));
+			count += entityManager.createQuery(statement).setParameterList("ids", chunk).executeUpdate();
+		}
+		return count;
+	}
+
 	@SuppressWarnings("unchecked")
 	public List<E> list() {
 		return criteria.list();
 	}
 
+	/**
+	 * Stream the results of this filter.
+	 *
+	 * {@link EntityFilter#stream(int)}
+	 *
+	 * @return A stream that must be closed
+	 */
+	public Stream<E> stream() {
+		return stream(ScrollableResultsIterator.DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Stream the results of this filter through scrollable results in the
+	 * default scroll mode of the dialect, detaching each entity once the next
+	 * one is read.
+	 *
+	 * {@link ScrollableResultsIterator}
+	 *
+	 * @param fetchSize
+	 *            The JDBC fetch size
+	 * @return A stream that must be closed
+	 */
+	public Stream<E> stream(int fetchSize) {
+		criteria.setFetchSize(fetchSize);
+		return new ScrollableResultsIterator<E>(criteria.scroll(), entityManager).stream();
+	}
+
 	@SuppressWarnings("unchecked")
 	public E uniqueResult() {
 		return (E) criteria.uniqueResult();
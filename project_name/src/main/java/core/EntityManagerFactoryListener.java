@@ -7,7 +7,10 @@ import javax.servlet.annotation.WebListener;
 import org.hibernate.SessionFactory;
 
 /**
- * A Servlet Context Listener to build an entity manager factory
+ * A Servlet Context Listener to build an entity manager factory, the pool
+ * of request scoped entity managers and the group commit writer, if enabled
+ * 
+ * {@link EntityManagerFilter}
  * 
  * @author Fernando Felix do Nascimento Junior
  */
@@ -15,6 +18,7 @@ import org.hibernate.SessionFactory;
 public class EntityManagerFactoryListener implements ServletContextListener {
 
 	private SessionFactory entityManagerFactory = null;
+	private GroupCommitWriter groupCommitWriter = null;
 
 	/**
 	 * {@inheritDoc}
@@ -24,6 +28,10 @@ public class EntityManagerFactoryListener implements ServletContextListener {
 	public void contextInitialized(ServletContextEvent e) {
 		entityManagerFactory = HibernateUtil.createEntityManagerFactory();
 		e.getServletContext().setAttribute("entity_manager_factory", entityManagerFactory);
+		e.getServletContext().setAttribute("entity_manager_pool", EntityManagerPool.create(entityManagerFactory));
+		groupCommitWriter = GroupCommitWriter.create(entityManagerFactory);
+		if (groupCommitWriter != null)
+			e.getServletContext().setAttribute("group_commit_writer", groupCommitWriter);
 	}
 
 	/**
@@ -32,6 +40,8 @@ public class EntityManagerFactoryListener implements ServletContextListener {
 	 * @see ServletContextListener#contextDestroyed(ServletContextEvent)
 	 */
 	public void contextDestroyed(ServletContextEvent e) {
+		if (groupCommitWriter != null)
+			groupCommitWriter.close(30000);
 		entityManagerFactory.close();
 	}
 
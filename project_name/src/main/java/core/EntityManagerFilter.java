@@ -0,0 +1,96 @@
+package core;
+
+import java.io.IOException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+
+import org.hibernate.Session;
+
+/**
+ * A Servlet Filter to scope entity managers by request (session per request).
+ * 
+ * The entity manager is only acquired from the {@link EntityManagerPool} when
+ * a request asks for it, so static resources do not hold one, and it is
+ * closed once the request is processed. A request processed asynchronously
+ * (asyncSupported) keeps its entity manager until the servlet that started
+ * the async processing releases it, as {@link RepositoryController} does.
+ * 
+ * @author Fernando Felix do Nascimento Junior
+ */
+@WebFilter(urlPatterns = "/*", asyncSupported = true)
+public class EntityManagerFilter implements Filter {
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see Filter#init(FilterConfig)
+	 */
+	public void init(FilterConfig config) throws ServletException {
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see Filter#doFilter(ServletRequest, ServletResponse, FilterChain)
+	 */
+	public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+			throws IOException, ServletException {
+		boolean async = false;
+		try {
+			chain.doFilter(request, response);
+			async = request.isAsyncStarted();
+		} finally {
+			if (!async)
+				releaseEntityManager(request);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * @see Filter#destroy()
+	 */
+	public void destroy() {
+	}
+
+	/**
+	 * Return the entity manager of a request, acquiring it on the first call.
+	 * 
+	 * @param request
+	 *            The request
+	 * @return The request scoped entity manager
+	 */
+	public static Session getEntityManager(ServletRequest request) {
+		Session entityManager = (Session) request.getAttribute("entity_manager");
+		if (entityManager == null) {
+			entityManager = getEntityManagerPool(request).acquire();
+			request.setAttribute("entity_manager", entityManager);
+		}
+		return entityManager;
+	}
+
+	/**
+	 * Close the entity manager of a request, if any was acquired.
+	 * 
+	 * @param request
+	 *            The request
+	 */
+	public static void releaseEntityManager(ServletRequest request) {
+		Session entityManager = (Session) request.getAttribute("entity_manager");
+		if (entityManager != null) {
+			request.removeAttribute("entity_manager");
+			getEntityManagerPool(request).release(entityManager);
+		}
+	}
+
+	public static EntityManagerPool getEntityManagerPool(ServletRequest request) {
+		return (EntityManagerPool) request.getServletContext().getAttribute("entity_manager_pool");
+	}
+
+}
@@ -0,0 +1,175 @@
+package core;
+
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.persistence.PersistenceException;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+
+/**
+ * A bounded source of entity managers (Hibernate sessions): at most
+ * max_size sessions, and thus JDBC connections and first-level caches, are
+ * open at a time. Callers block up to acquire_timeout milliseconds for a
+ * free slot.
+ *
+ * Settings (hibernate.cfg.xml):
+ *
+ * <code>
+ * hibernate.entity_manager_pool.max_size (default 20)
+ * hibernate.entity_manager_pool.acquire_timeout (default 30000)
+ * hibernate.n_plus_one_detector.threshold (default 0, {@link NPlusOneDetector})
+ * </code>
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class EntityManagerPool {
+
+	public static final String MAX_SIZE = "hibernate.entity_manager_pool.max_size";
+	public static final String ACQUIRE_TIMEOUT = "hibernate.entity_manager_pool.acquire_timeout";
+
+	private SessionFactory entityManagerFactory;
+	private Semaphore permits;
+	private int maxSize;
+	private long acquireTimeout;
+	private int nPlusOneThreshold;
+
+	private final AtomicInteger activeCount = new AtomicInteger();
+	private final AtomicInteger peakCount = new AtomicInteger();
+	private final AtomicLong openedCount = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+
+	public EntityManagerPool(SessionFactory entityManagerFactory, int maxSize, long acquireTimeout) {
+		this(entityManagerFactory, maxSize, acquireTimeout, 0);
+	}
+
+	public EntityManagerPool(SessionFactory entityManagerFactory, int maxSize, long acquireTimeout,
+			int nPlusOneThreshold) {
+		this.entityManagerFactory = entityManagerFactory;
+		this.maxSize = maxSize;
+		this.acquireTimeout = acquireTimeout;
+		this.nPlusOneThreshold = nPlusOneThreshold;
+		this.permits = new Semaphore(maxSize, true);
+	}
+
+	/**
+	 * Create a pool configured by the session factory properties.
+	 *
+	 * @param entityManagerFactory
+	 *            The session factory
+	 * @return An entity manager pool
+	 */
+	public static EntityManagerPool create(SessionFactory entityManagerFactory) {
+		Map<String, Object> properties = entityManagerFactory.getProperties();
+		int maxSize = Integer.parseInt(String.valueOf(properties.getOrDefault(MAX_SIZE, "20")));
+		long acquireTimeout = Long.parseLong(String.valueOf(properties.getOrDefault(ACQUIRE_TIMEOUT, "30000")));
+		int nPlusOneThreshold = Integer
+				.parseInt(String.valueOf(properties.getOrDefault(NPlusOneDetector.THRESHOLD, "0")));
+		return new EntityManagerPool(entityManagerFactory, maxSize, acquireTimeout, nPlusOneThreshold);
+	}
+
+	public SessionFactory getEntityManagerFactory() {
+		return entityManagerFactory;
+	}
+
+	/**
+	 * Open an entity manager, waiting for a free slot if max_size are open.
+	 *
+	 * @return An entity manager that must be given back by
+	 *         {@link EntityManagerPool#release(Session)}
+	 * @throws PersistenceException
+	 *             If no slot is freed within acquire_timeout
+	 */
+	public Session acquire() throws PersistenceException {
+		try {
+			if (!permits.tryAcquire(acquireTimeout, TimeUnit.MILLISECONDS)) {
+				timeoutCount.incrementAndGet();
+				throw new PersistenceException(
+						"No entity manager available after " + acquireTimeout + " ms (max_size " + maxSize + ").");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PersistenceException("Interrupted while waiting for an entity manager.", e);
+		}
+
+		try {
+			Session entityManager = nPlusOneThreshold > 0
+					? entityManagerFactory.withOptions()
+							.statementInspector(new NPlusOneDetector(entityManagerFactory, nPlusOneThreshold))
+							.openSession()
+					: entityManagerFactory.openSession();
+			openedCount.incrementAndGet();
+			peakCount.accumulateAndGet(activeCount.incrementAndGet(), Math::max);
+			return entityManager;
+		} catch (RuntimeException e) {
+			permits.release();
+			throw e;
+		}
+	}
+
+	/**
+	 * Close an entity manager and free its slot.
+	 *
+	 * @param entityManager
+	 *            An entity manager given by {@link EntityManagerPool#acquire()}
+	 */
+	public void release(Session entityManager) {
+		try {
+			if (entityManager.isOpen())
+				entityManager.close();
+		} finally {
+			activeCount.decrementAndGet();
+			permits.release();
+		}
+	}
+
+	public int getNPlusOneThreshold() {
+		return nPlusOneThreshold;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return The number of open entity managers
+	 */
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+
+	/**
+	 * @return The number of entity managers that can still be opened (free
+	 *         slots, entity managers are not kept idle)
+	 */
+	public int getAvailableCount() {
+		return maxSize - activeCount.get();
+	}
+
+	/**
+	 * @return The highest number of entity managers open at the same time
+	 */
+	public int getPeakCount() {
+		return peakCount.get();
+	}
+
+	/**
+	 * @return The number of threads waiting for an entity manager
+	 */
+	public int getWaitingCount() {
+		return permits.getQueueLength();
+	}
+
+	public long getOpenedCount() {
+		return openedCount.get();
+	}
+
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+
+}
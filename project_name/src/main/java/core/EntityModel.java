@@ -3,15 +3,23 @@ package core;
 import java.util.Date;
 
 import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
 import javax.persistence.Temporal;
 import javax.persistence.TemporalType;
 
+import org.hibernate.annotations.GenericGenerator;
+
 /**
  * Basic entity model.
  * 
+ * Ids are generated in memory from the max id of the table (read once), so
+ * Hibernate can batch inserts, which IDENTITY columns prevent since the id is
+ * only known after each insert. Only one application may write to the
+ * database at a time, which is the SQLite case.
+ * 
+ * {@link org.hibernate.id.IncrementGenerator}
+ * 
  * @author Fernando Felix do Nascimento Junior
  * 
  * @see EntityModel
@@ -20,7 +28,8 @@ import javax.persistence.TemporalType;
 public class EntityModel {
 
 	@Id
-	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@GeneratedValue(generator = "increment")
+	@GenericGenerator(name = "increment", strategy = "increment")
 	private Long id;
 
 	@Temporal(TemporalType.TIMESTAMP)
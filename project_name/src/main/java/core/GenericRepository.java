@@ -1,8 +1,15 @@
 package core;
 
 import java.lang.reflect.ParameterizedType;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import javax.persistence.PersistenceException;
 
 import org.hibernate.Criteria;
 import org.hibernate.query.Query;
@@ -16,8 +23,11 @@ import org.hibernate.InstantiationException;
  */
 public class GenericRepository<T extends EntityModel> {
 
+	private static final int DEFAULT_BATCH_SIZE = 50;
+
 	private Class<T> entityClass;
 	private Session entityManager;
+	private GroupCommitWriter groupCommitWriter;
 
 	/**
 	 * Constructor for generic repositories
@@ -58,6 +68,31 @@ public class GenericRepository<T extends EntityModel> {
 		return entityManager;
 	}
 
+	public GroupCommitWriter getGroupCommitWriter() {
+		return groupCommitWriter;
+	}
+
+	/**
+	 * Funnel the async writes of this repository through a group commit
+	 * writer.
+	 *
+	 * @param groupCommitWriter
+	 *            The writer or null to write in the session of this repository
+	 */
+	public void setGroupCommitWriter(GroupCommitWriter groupCommitWriter) {
+		this.groupCommitWriter = groupCommitWriter;
+	}
+
+	/**
+	 * Run a write of a repository on the group commit writer or, if there is
+	 * none, at once in the session of this repository.
+	 */
+	private <R> CompletableFuture<R> write(Function<GenericRepository<T>, R> work) {
+		if (groupCommitWriter != null)
+			return groupCommitWriter.submit(entityManager -> work.apply(create(entityClass, entityManager)));
+		return CompletableFuture.completedFuture(work.apply(this));
+	}
+
 	@SuppressWarnings("deprecation")
 	public Criteria createCriteria() {
 		return entityManager.createCriteria(entityClass);
@@ -71,10 +106,104 @@ public class GenericRepository<T extends EntityModel> {
 		return new QueryBuilder<T>(entityClass, entityManager);
 	}
 
+	public UpdateBuilder<T> createUpdateBuilder() {
+		return new UpdateBuilder<T>(entityClass, entityManager);
+	}
+
+	public DeleteBuilder<T> createDeleteBuilder() {
+		return new DeleteBuilder<T>(entityClass, entityManager);
+	}
+
 	public Long save(T o) {
 		return (Long) entityManager.save(o);
 	}
 
+	/**
+	 * Save a collection of entities in JDBC batches of hibernate.jdbc.batch_size
+	 * statements, flushing and detaching the saved entities after each batch
+	 * to keep the session small.
+	 *
+	 * @param entities
+	 *            The entities to be saved
+	 * @return The generated ids
+	 */
+	public List<Long> saveAll(Collection<T> entities) {
+		int batchSize = getBatchSize();
+		List<Long> ids = new ArrayList<Long>(entities.size());
+		List<T> batch = new ArrayList<T>(batchSize);
+
+		for (T o : entities) {
+			ids.add(save(o));
+			batch.add(o);
+			if (batch.size() == batchSize) {
+				flushAndDetach(batch);
+				batch.clear();
+			}
+		}
+
+		flushAndDetach(batch);
+		return ids;
+	}
+
+	private void flushAndDetach(List<T> batch) {
+		if (batch.isEmpty())
+			return;
+		entityManager.flush();
+		for (T o : batch)
+			entityManager.detach(o);
+	}
+
+	private int getBatchSize() {
+		int batchSize = entityManager.getSessionFactory().getSessionFactoryOptions().getJdbcBatchSize();
+		return batchSize > 1 ? batchSize : DEFAULT_BATCH_SIZE;
+	}
+
+	/**
+	 * Save an entity by the group commit writer, if any.
+	 *
+	 * {@link GroupCommitWriter}
+	 *
+	 * @param o
+	 *            A new entity, not attached to the session of this repository
+	 * @return The future generated id, completed once the entity is committed
+	 */
+	public CompletableFuture<Long> saveAsync(T o) {
+		return write(repository -> repository.save(o));
+	}
+
+	public CompletableFuture<Void> updateAsync(T o) {
+		return write(repository -> {
+			repository.update(o);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> removeAsync(T o) {
+		return write(repository -> {
+			repository.remove(o);
+			return null;
+		});
+	}
+
+	/**
+	 * Wait for a write of this repository, at most the timeout of the group
+	 * commit writer, if any. The session of this repository must be read-only
+	 * so it holds no writer connection the writer needs.
+	 *
+	 * {@link GroupCommitWriter#await(CompletableFuture)}
+	 *
+	 * @param write
+	 *            The future of a write (ie.: saveAsync)
+	 * @return The write result
+	 * @throws PersistenceException
+	 *             If the write failed or was not committed in time
+	 */
+	public <R> R await(CompletableFuture<R> write) throws PersistenceException {
+		if (groupCommitWriter != null)
+			return groupCommitWriter.await(write);
+		return write.join();
+	}
+
 	public void update(T o) {
 		o.setDateUpdated(new Date());
 		entityManager.update(o);
@@ -97,10 +226,95 @@ public class GenericRepository<T extends EntityModel> {
 		return (T) entityManager.get(entityClass, id);
 	}
 
+	/**
+	 * {@link QueryBuilder#count()}
+	 *
+	 * @return The number of entities
+	 */
+	public long count() {
+		return createQueryBuilder().count();
+	}
+
+	/**
+	 * Check if an entity exists without loading it.
+	 *
+	 * @param id
+	 *            The entity id
+	 * @return true if it exists
+	 */
+	public boolean existsById(Long id) {
+		return createQueryBuilder().eq("id", id).exists();
+	}
+
+	/**
+	 * Delete an entity by a bulk DELETE statement, without loading it.
+	 *
+	 * {@link QueryBuilder#deleteWhere()}
+	 *
+	 * @param id
+	 *            The entity id
+	 * @return true if it was deleted, false if it does not exist
+	 */
+	public boolean deleteById(Long id) {
+		return createQueryBuilder().eq("id", id).deleteWhere() > 0;
+	}
+
+	/**
+	 * Delete the entities of a query builder without loading them.
+	 *
+	 * @param queryBuilder
+	 *            A query builder of this repository
+	 * @return The number of deleted entities
+	 */
+	public int deleteWhere(QueryBuilder<T> queryBuilder) {
+		return queryBuilder.deleteWhere();
+	}
+
 	public List<T> findAll() {
 		return createQueryBuilder().build().getResultList();
 	}
 
+	/**
+	 * Stream all entities keeping the memory constant regardless of the table
+	 * size.
+	 *
+	 * {@link QueryBuilder#stream(int)}
+	 *
+	 * @param fetchSize
+	 *            The JDBC fetch size
+	 * @return A stream that must be closed
+	 */
+	public Stream<T> stream(int fetchSize) {
+		return createQueryBuilder().stream(fetchSize);
+	}
+
+	public Stream<T> stream() {
+		return createQueryBuilder().stream();
+	}
+
+	/**
+	 * Return a page of entities by keyset pagination on id.
+	 *
+	 * {@link QueryBuilder#page(Long, int, String)}
+	 *
+	 * @param cursor
+	 *            The cursor of the previous page in the same direction or
+	 *            null for the first page
+	 * @param limit
+	 *            The page size
+	 * @param direction
+	 *            "ASC" || "DESC"
+	 * @return A page
+	 * @throws IllegalArgumentException
+	 *             If the limit is invalid ({@link Page#checkLimit(int)})
+	 */
+	public Page<T> page(String cursor, int limit, String direction) {
+		Page.checkLimit(limit);
+		List<T> rows = createQueryBuilder().page(Page.decode(cursor, direction), limit + 1, direction).build()
+				.getResultList();
+		return Page.of(rows, limit, direction, EntityModel::getId);
+	}
+
 	public static <E extends EntityModel> GenericRepository<E> create(Class<E> entityClass, Session entityManager) {
 		return new GenericRepository<E>(entityClass, entityManager);
 	}
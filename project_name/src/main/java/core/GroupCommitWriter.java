@@ -0,0 +1,341 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.persistence.PersistenceException;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.jboss.logging.Logger;
+
+/**
+ * A single writer committing the writes of many requests in group
+ * transactions. SQLite allows one writer at a time, so instead of each
+ * request beginning its own write transaction and queuing for the write
+ * lock, writes are queued to this writer thread, which runs up to
+ * max_batch_size of them in one transaction, waiting at most max_delay
+ * milliseconds for a batch to fill. The future of each write is completed
+ * once its transaction is committed.
+ *
+ * A group transaction failing on lock contention is run again as configured
+ * by the {@link RetryPolicy} settings, its backoff capped by
+ * max_retry_backoff as the writer thread waits it instead of committing. A
+ * failing write (even on an Error) does not fail the writes grouped with it:
+ * the group transaction is rolled back and its writes are retried one
+ * transaction each. Should the writer thread die anyway, the writer is
+ * closed and its queued writes failed, so no request waits for them.
+ *
+ * A request waiting for its write ({@link GroupCommitWriter#await}) must not
+ * hold a writer connection, which the writer thread needs to commit: it must
+ * run in a read-only transaction.
+ *
+ * Settings (hibernate.cfg.xml):
+ *
+ * <code>
+ * hibernate.group_commit.enabled (default false)
+ * hibernate.group_commit.max_batch_size (default 500)
+ * hibernate.group_commit.max_delay (default 2 ms)
+ * hibernate.group_commit.queue_size (default 10000, writes beyond fail)
+ * hibernate.group_commit.timeout (default 30000 ms, waiting for a write)
+ * hibernate.group_commit.max_retry_backoff (default 50 ms)
+ * </code>
+ *
+ * {@link GenericRepository#saveAsync(EntityModel)}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class GroupCommitWriter {
+
+	public static final String ENABLED = "hibernate.group_commit.enabled";
+	public static final String MAX_BATCH_SIZE = "hibernate.group_commit.max_batch_size";
+	public static final String MAX_DELAY = "hibernate.group_commit.max_delay";
+	public static final String QUEUE_SIZE = "hibernate.group_commit.queue_size";
+	public static final String TIMEOUT = "hibernate.group_commit.timeout";
+	public static final String MAX_RETRY_BACKOFF = "hibernate.group_commit.max_retry_backoff";
+
+	private static final Logger LOG = Logger.getLogger(GroupCommitWriter.class);
+
+	private static class Write<R> {
+
+		private final Function<Session, R> work;
+		private final CompletableFuture<R> future = new CompletableFuture<R>();
+		private R result;
+
+		private Write(Function<Session, R> work) {
+			this.work = work;
+		}
+
+		private void run(Session entityManager) {
+			result = work.apply(entityManager);
+		}
+
+		private void complete() {
+			future.complete(result);
+		}
+
+	}
+
+	private SessionFactory entityManagerFactory;
+	private int maxBatchSize;
+	private long maxDelay;
+	private int queueSize;
+	private long timeout;
+	private RetryPolicy retryPolicy;
+
+	private final BlockingQueue<Write<?>> queue;
+	private final Thread writer;
+	private volatile boolean closed = false;
+
+	private final AtomicLong writeCount = new AtomicLong();
+	private final AtomicLong batchCount = new AtomicLong();
+	private final AtomicLong failureCount = new AtomicLong();
+
+	public GroupCommitWriter(SessionFactory entityManagerFactory, int maxBatchSize, long maxDelay, int queueSize) {
+		if (maxBatchSize < 1 || maxDelay < 0 || queueSize < 1)
+			throw new IllegalArgumentException("Invalid batch size " + maxBatchSize + ", delay " + maxDelay
+					+ " or queue size " + queueSize + " of group commit writer");
+		this.entityManagerFactory = entityManagerFactory;
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelay = maxDelay;
+		this.queueSize = queueSize;
+		Map<String, Object> properties = entityManagerFactory.getProperties();
+		this.timeout = Long.parseLong(String.valueOf(properties.getOrDefault(TIMEOUT, "30000")));
+		RetryPolicy retryPolicy = RetryPolicy.create(properties);
+		long maxRetryBackoff = Long.parseLong(String.valueOf(properties.getOrDefault(MAX_RETRY_BACKOFF, "50")));
+		this.retryPolicy = new RetryPolicy(retryPolicy.getMaxAttempts(),
+				Math.min(retryPolicy.getInitialBackoff(), maxRetryBackoff),
+				Math.min(retryPolicy.getMaxBackoff(), maxRetryBackoff));
+		this.queue = new LinkedBlockingQueue<Write<?>>(queueSize);
+		this.writer = new Thread(this::write, "group-commit-writer");
+		this.writer.setDaemon(true);
+		this.writer.start();
+	}
+
+	/**
+	 * Create a writer configured by the session factory properties.
+	 *
+	 * @param entityManagerFactory
+	 *            The session factory
+	 * @return A group commit writer or null if it is not enabled
+	 */
+	public static GroupCommitWriter create(SessionFactory entityManagerFactory) {
+		Map<String, Object> properties = entityManagerFactory.getProperties();
+		if (!Boolean.parseBoolean(String.valueOf(properties.getOrDefault(ENABLED, "false"))))
+			return null;
+		int maxBatchSize = Integer.parseInt(String.valueOf(properties.getOrDefault(MAX_BATCH_SIZE, "500")));
+		long maxDelay = Long.parseLong(String.valueOf(properties.getOrDefault(MAX_DELAY, "2")));
+		int queueSize = Integer.parseInt(String.valueOf(properties.getOrDefault(QUEUE_SIZE, "10000")));
+		return new GroupCommitWriter(entityManagerFactory, maxBatchSize, maxDelay, queueSize);
+	}
+
+	/**
+	 * Queue a write. The work runs on the writer thread with the session of
+	 * the group transaction, so it must not keep the session nor share
+	 * entities attached to another session.
+	 *
+	 * @param work
+	 *            The write, given the session of the group transaction
+	 * @return The future of the work result, completed once committed or
+	 *         exceptionally if the write fails or the queue is full
+	 */
+	public <R> CompletableFuture<R> submit(Function<Session, R> work) {
+		Write<R> write = new Write<R>(work);
+		if (closed)
+			write.future.completeExceptionally(new PersistenceException("Group commit writer is closed."));
+		else if (!queue.offer(write))
+			write.future.completeExceptionally(
+					new PersistenceException("Group commit writer has " + queueSize + " writes queued."));
+		else if (closed && queue.remove(write))
+			// closed meanwhile, the queued writes may already be failed
+			write.future.completeExceptionally(new PersistenceException("Group commit writer is closed."));
+		return write.future;
+	}
+
+	/**
+	 * Wait for a write of this writer, at most timeout milliseconds. A write
+	 * timed out is not cancelled: it may still be committed.
+	 *
+	 * @param write
+	 *            The future of a submitted write
+	 * @return The work result
+	 * @throws PersistenceException
+	 *             If the write failed or was not committed in time
+	 */
+	public <R> R await(CompletableFuture<R> write) throws PersistenceException {
+		try {
+			return write.get(timeout, TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof PersistenceException)
+				throw (PersistenceException) e.getCause();
+			throw new PersistenceException(e.getCause());
+		} catch (TimeoutException e) {
+			throw new PersistenceException("Write was not committed within " + timeout + " ms.", e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PersistenceException("Interrupted while waiting for a write.", e);
+		}
+	}
+
+	private void write() {
+		List<Write<?>> batch = new ArrayList<Write<?>>(maxBatchSize);
+		try {
+			while (!closed || !queue.isEmpty()) {
+				try {
+					Write<?> first = queue.poll(100, TimeUnit.MILLISECONDS);
+					if (first == null)
+						continue;
+					batch.add(first);
+					long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelay);
+					while (batch.size() < maxBatchSize) {
+						Write<?> next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+						if (next == null)
+							break;
+						batch.add(next);
+					}
+				} catch (InterruptedException e) {
+					closed = true;
+				}
+				if (!batch.isEmpty() && !commit(batch))
+					for (Write<?> write : batch)
+						commit(Collections.<Write<?>> singletonList(write));
+				batch.clear();
+			}
+		} catch (Throwable e) {
+			LOG.errorf(e, "Group commit writer failed, failing %d writes", batch.size() + queue.size());
+		} finally {
+			closed = true;
+			for (Write<?> write : batch)
+				write.future.completeExceptionally(new PersistenceException("Group commit writer is closed."));
+			failQueued();
+		}
+	}
+
+	/**
+	 * Run writes in one transaction, completing their futures once committed,
+	 * and run them again on lock contention.
+	 *
+	 * @return false if the transaction was rolled back and the writes of a
+	 *         batch must be retried one by one
+	 */
+	private boolean commit(List<Write<?>> batch) {
+		for (int attempt = 1;; attempt++) {
+			Session entityManager = null;
+			Transaction transaction = null;
+			try {
+				entityManager = entityManagerFactory.openSession();
+				transaction = entityManager.beginTransaction();
+				for (Write<?> write : batch)
+					write.run(entityManager);
+				transaction.commit();
+				break;
+			} catch (Throwable e) {
+				rollback(transaction, e);
+				if (retryPolicy.retry(e, attempt))
+					continue;
+				if (batch.size() > 1) {
+					LOG.debugf(e, "Group commit of %d writes failed, retrying them one by one", batch.size());
+					return false;
+				}
+				failureCount.incrementAndGet();
+				batch.get(0).future.completeExceptionally(e);
+				return true;
+			} finally {
+				if (entityManager != null && entityManager.isOpen())
+					entityManager.close();
+			}
+		}
+		batchCount.incrementAndGet();
+		writeCount.addAndGet(batch.size());
+		for (Write<?> write : batch)
+			write.complete();
+		return true;
+	}
+
+	private void rollback(Transaction transaction, Throwable failure) {
+		try {
+			if (transaction != null && transaction.isActive())
+				transaction.rollback();
+		} catch (RuntimeException e) {
+			failure.addSuppressed(e);
+		}
+	}
+
+	private void failQueued() {
+		for (Write<?> write; (write = queue.poll()) != null;)
+			write.future.completeExceptionally(new PersistenceException("Group commit writer is closed."));
+	}
+
+	/**
+	 * Stop accepting writes and commit the queued ones.
+	 *
+	 * @param timeout
+	 *            The maximum time to wait in milliseconds
+	 */
+	public void close(long timeout) {
+		closed = true;
+		try {
+			writer.join(timeout);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		failQueued();
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public long getMaxDelay() {
+		return maxDelay;
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	public long getTimeout() {
+		return timeout;
+	}
+
+	/**
+	 * @return The number of writes waiting for the writer
+	 */
+	public int getQueuedCount() {
+		return queue.size();
+	}
+
+	/**
+	 * @return The number of committed writes
+	 */
+	public long getWriteCount() {
+		return writeCount.get();
+	}
+
+	/**
+	 * @return The number of committed transactions
+	 */
+	public long getBatchCount() {
+		return batchCount.get();
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	public long getFailureCount() {
+		return failureCount.get();
+	}
+
+}
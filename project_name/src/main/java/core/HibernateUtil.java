@@ -2,10 +2,15 @@ package core;
 
 import org.hibernate.QueryException;
 import org.hibernate.SessionFactory;
+import org.hibernate.cfg.AvailableSettings;
 import org.hibernate.cfg.Configuration;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.stat.internal.StatisticsInitiator;
 import org.hibernate.type.Type;
 
+import core.cache.CacheRegionFactory;
 import foo.bar.entities.Message;
 
 /**
@@ -33,7 +38,11 @@ public class HibernateUtil {
 
 	/**
 	 * Creates a Hibernate configuration based on a resource file wit Annotated
-	 * classes registered dynamically.
+	 * classes registered dynamically. Connections are pooled by
+	 * {@link SQLiteConnectionProvider} and the second-level cache is provided by
+	 * {@link CacheRegionFactory} and statistics log slow queries
+	 * ({@link SlowQueryStatisticsFactory}) unless others are configured.
+	 * The property types of the entities are indexed by {@link PropertyTypeIndex}.
 	 * 
 	 * @param resource
 	 *            The resource name. If none given, Hibernate handles the
@@ -48,6 +57,13 @@ public class HibernateUtil {
 			configuration.configure();
 		else
 			configuration.configure(resource);
+		if (configuration.getProperty(AvailableSettings.CONNECTION_PROVIDER) == null)
+			configuration.setProperty(AvailableSettings.CONNECTION_PROVIDER, SQLiteConnectionProvider.class.getName());
+		if (configuration.getProperty(StatisticsInitiator.STATS_BUILDER) == null)
+			configuration.setProperty(StatisticsInitiator.STATS_BUILDER, SlowQueryStatisticsFactory.class.getName());
+		if (configuration.getProperty(AvailableSettings.CACHE_REGION_FACTORY) == null)
+			configuration.setProperty(AvailableSettings.CACHE_REGION_FACTORY, CacheRegionFactory.class.getName());
+		configuration.setSessionFactoryObserver(PropertyTypeIndex.OBSERVER);
 		registerAnnoteatedClass(configuration);
 		return configuration;
 	}
@@ -62,6 +78,33 @@ public class HibernateUtil {
 		configuration.addAnnotatedClass(Message.class);
 	}
 
+	/**
+	 * Return the connection provider of a session factory, ie.: to monitor the
+	 * pool statistics of a {@link SQLiteConnectionProvider}.
+	 *
+	 * @param entityManagerFactory
+	 *            The session factory
+	 * @return The connection provider
+	 */
+	public static ConnectionProvider getConnectionProvider(SessionFactory entityManagerFactory) {
+		return entityManagerFactory.getSessionFactoryOptions().getServiceRegistry()
+				.getService(ConnectionProvider.class);
+	}
+
+	/**
+	 * Return the second-level cache of a session factory, ie.: to monitor the
+	 * statistics of its regions.
+	 *
+	 * @param entityManagerFactory
+	 *            The session factory
+	 * @return The region factory or null if the cache is not provided by
+	 *         {@link CacheRegionFactory}
+	 */
+	public static CacheRegionFactory getCacheRegionFactory(SessionFactory entityManagerFactory) {
+		Object regionFactory = ((SessionFactoryImplementor) entityManagerFactory).getCache().getRegionFactory();
+		return regionFactory instanceof CacheRegionFactory ? (CacheRegionFactory) regionFactory : null;
+	}
+
 	/**
 	 * Return the entity metadata
 	 *
@@ -75,7 +118,8 @@ public class HibernateUtil {
 	}
 
 	/**
-	 * Retorn the type of an entity property recursively
+	 * Retorn the type of an entity property, resolved once per session factory
+	 * by {@link PropertyTypeIndex}
 	 *
 	 * @param entityClass
 	 *            Entity class
@@ -85,26 +129,7 @@ public class HibernateUtil {
 	 */
 	public static Type getPropertyType(Class<?> entityClass, String propertyName, SessionFactory entityManagerFactory)
 			throws QueryException {
-		if (propertyName == null)
-			throw new QueryException("Property name passed cannot be null or empty");
-
-		// se for uma propriedade singular
-		if (!propertyName.contains(".")) {
-			return HibernateUtil.getEntityMetadata(entityClass, entityManagerFactory).getPropertyType(propertyName);
-		} // se não ...
-
-		// seta a propriedade principal (a primeira)
-		Type mainProperty = HibernateUtil.getEntityMetadata(entityClass, entityManagerFactory)
-				.getPropertyType(propertyName.split("\\.")[0]);
-
-		// se realmente for uma propriedade e se for um tipo de entidade
-		if (mainProperty.isEntityType()) {
-			String subProperties = propertyName.substring(propertyName.indexOf(".") + 1, propertyName.length());
-
-			// verifica se as subpropriedades sao validas pelo seu gerenciador
-			return getPropertyType(mainProperty.getReturnedClass(), subProperties, entityManagerFactory);
-		} else
-			throw new QueryException("Property type " + propertyName.split("\\.")[0] + " is not a entity.");
+		return PropertyTypeIndex.of(entityManagerFactory).get(entityClass, propertyName).getType();
 	}
 
 }
@@ -0,0 +1,25 @@
+package core;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a controller action whose unit of work can be run again once rolled
+ * back, ie.: all of its changes are made in the request transaction, so it
+ * is retried on lock contention by the {@link RetryPolicy} of the
+ * {@link RepositoryController}. GET and HEAD requests are always retried.
+ *
+ * An action writing through the {@link GroupCommitWriter}, which commits
+ * apart from the request transaction, is not idempotent.
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface Idempotent {
+
+}
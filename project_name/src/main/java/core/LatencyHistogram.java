@@ -0,0 +1,125 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies with exponential buckets, from 100
+ * microseconds to about 100 seconds, doubling at each bucket. Recording is
+ * a bucket index computation and two increments, so it can be done on every
+ * request.
+ *
+ * {@link MetricsRegistry}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class LatencyHistogram {
+
+	private static final long FIRST_BOUND = 100000L;
+
+	/**
+	 * The upper bounds (inclusive) of the buckets in nanoseconds, the last
+	 * bucket being unbounded.
+	 */
+	private static final long[] BOUNDS = new long[21];
+
+	static {
+		for (int i = 0; i < BOUNDS.length; i++)
+			BOUNDS[i] = FIRST_BOUND << i;
+	}
+
+	private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	private static int bucket(long nanos) {
+		if (nanos <= FIRST_BOUND)
+			return 0;
+		// index of the smallest bound >= nanos
+		int index = 64 - Long.numberOfLeadingZeros((nanos - 1) / FIRST_BOUND);
+		return Math.min(index, BOUNDS.length);
+	}
+
+	/**
+	 * Record a latency.
+	 *
+	 * @param nanos
+	 *            The latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		counts.incrementAndGet(bucket(nanos));
+		sum.add(nanos);
+		long current;
+		while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos))
+			;
+	}
+
+	/**
+	 * @return The upper bounds of the buckets in nanoseconds, but the last
+	 *         (unbounded) one
+	 */
+	public static long[] getBounds() {
+		return BOUNDS.clone();
+	}
+
+	/**
+	 * @return The number of latencies of each bucket, the last one counting
+	 *         those above the last bound
+	 */
+	public long[] getCounts() {
+		long[] snapshot = new long[counts.length()];
+		for (int i = 0; i < snapshot.length; i++)
+			snapshot[i] = counts.get(i);
+		return snapshot;
+	}
+
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < counts.length(); i++)
+			count += counts.get(i);
+		return count;
+	}
+
+	/**
+	 * @return The sum of the latencies in nanoseconds
+	 */
+	public long getSum() {
+		return sum.sum();
+	}
+
+	/**
+	 * @return The maximum latency in nanoseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * The upper bound of the bucket of a quantile, ie.: 0.99 for the 99th
+	 * percentile.
+	 *
+	 * @param quantile
+	 *            A quantile from 0 to 1
+	 * @return The latency in nanoseconds
+	 */
+	public long getValueAtQuantile(double quantile) {
+		long[] snapshot = getCounts();
+		long total = 0;
+		for (long count : snapshot)
+			total += count;
+		if (total == 0)
+			return 0;
+		long rank = (long) Math.ceil(quantile * total);
+		long seen = 0;
+		for (int i = 0; i < BOUNDS.length; i++) {
+			seen += snapshot[i];
+			if (seen >= rank)
+				return Math.min(BOUNDS[i], getMax());
+		}
+		return getMax();
+	}
+
+}
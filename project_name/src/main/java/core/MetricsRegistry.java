@@ -0,0 +1,82 @@
+package core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The latency histograms of the controller actions, by controller (servlet
+ * name) and action, and the executors of the controllers in async mode.
+ *
+ * {@link RepositoryController} {@link MetricsServlet}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class MetricsRegistry {
+
+	private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+	private final Map<String, ActionExecutor> executors = new ConcurrentHashMap<String, ActionExecutor>();
+	private final Map<List<String>, LatencyHistogram> actions = new ConcurrentHashMap<List<String>, LatencyHistogram>();
+
+	/**
+	 * The registry shared by all controllers.
+	 *
+	 * @return The default registry
+	 */
+	public static MetricsRegistry getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Return the latency histogram of an action, creating it on first use.
+	 *
+	 * @param controller
+	 *            The controller name
+	 * @param action
+	 *            The action name
+	 * @return The histogram
+	 */
+	public LatencyHistogram getActionHistogram(String controller, String action) {
+		List<String> key = Arrays.asList(controller, action);
+		LatencyHistogram histogram = actions.get(key);
+		if (histogram == null)
+			histogram = actions.computeIfAbsent(key, k -> new LatencyHistogram());
+		return histogram;
+	}
+
+	/**
+	 * @return The histograms by [controller, action]
+	 */
+	public Map<List<String>, LatencyHistogram> getActionHistograms() {
+		return Collections.unmodifiableMap(actions);
+	}
+
+	/**
+	 * Register the executor of a controller in async mode.
+	 *
+	 * @param executor
+	 *            The executor
+	 */
+	public void addExecutor(ActionExecutor executor) {
+		executors.put(executor.getName(), executor);
+	}
+
+	public void removeExecutor(ActionExecutor executor) {
+		executors.remove(executor.getName(), executor);
+	}
+
+	/**
+	 * @return The executors by controller name
+	 */
+	public Map<String, ActionExecutor> getExecutors() {
+		return Collections.unmodifiableMap(executors);
+	}
+
+	public void clear() {
+		actions.clear();
+	}
+
+}
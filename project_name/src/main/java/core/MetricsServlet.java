@@ -0,0 +1,270 @@
+package core;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.stat.Statistics;
+
+import core.cache.CacheRegion;
+import core.cache.CacheRegionFactory;
+
+/**
+ * Exposes the application metrics in the Prometheus text format:
+ *
+ * <ul>
+ * <li>Hibernate statistics (hibernate.generate_statistics) and slow queries
+ * ({@link SlowQueryStatisticsFactory}).</li>
+ * <li>Connection pools ({@link SQLiteConnectionProvider}) and the entity
+ * manager pool ({@link EntityManagerPool}).</li>
+ * <li>N+1 selects flagged by the {@link NPlusOneDetector}.</li>
+ * <li>Retries and give-ups on lock contention ({@link RetryPolicy}).</li>
+ * <li>Second-level cache regions ({@link CacheRegionFactory}) and the
+ * {@link StatementCache}.</li>
+ * <li>Latency histograms of the controller actions and executors of the
+ * controllers in async mode ({@link MetricsRegistry}).</li>
+ * </ul>
+ *
+ * {@link https://prometheus.io/docs/instrumenting/exposition_formats/}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+	@Override
+	protected void doGet(HttpServletRequest request, HttpServletResponse response)
+			throws ServletException, IOException {
+		ServletContext context = getServletContext();
+		response.setContentType(CONTENT_TYPE);
+		write(response.getWriter(), (SessionFactory) context.getAttribute("entity_manager_factory"),
+				(EntityManagerPool) context.getAttribute("entity_manager_pool"));
+	}
+
+	/**
+	 * Write the metrics of an application.
+	 *
+	 * @param writer
+	 *            The output
+	 * @param entityManagerFactory
+	 *            The session factory or null
+	 * @param entityManagerPool
+	 *            The entity manager pool or null
+	 */
+	public static void write(PrintWriter writer, SessionFactory entityManagerFactory,
+			EntityManagerPool entityManagerPool) {
+		if (entityManagerFactory != null) {
+			writeStatistics(writer, entityManagerFactory.getStatistics());
+			ConnectionProvider connectionProvider = HibernateUtil.getConnectionProvider(entityManagerFactory);
+			if (connectionProvider instanceof SQLiteConnectionProvider) {
+				SQLiteConnectionProvider provider = (SQLiteConnectionProvider) connectionProvider;
+				List<ConnectionPool> pools = new ArrayList<ConnectionPool>();
+				pools.add(provider.getWriterPool());
+				if (provider.getReaderPool() != null)
+					pools.add(provider.getReaderPool());
+				writeConnectionPools(writer, pools);
+			}
+			CacheRegionFactory regionFactory = HibernateUtil.getCacheRegionFactory(entityManagerFactory);
+			if (regionFactory != null)
+				writeCacheRegions(writer, regionFactory.getRegions().values());
+		}
+		if (entityManagerPool != null)
+			writeEntityManagerPool(writer, entityManagerPool);
+		writeStatementCache(writer, StatementCache.getInstance());
+		write(writer, "n_plus_one_detections_total", "counter", "Possible N+1 selects flagged", null,
+				NPlusOneDetector.getDetectionCount());
+		write(writer, "transaction_retries_total", "counter", "Units of work run again on lock contention", null,
+				RetryPolicy.getRetryCount());
+		write(writer, "transaction_retry_give_ups_total", "counter",
+				"Units of work failing on lock contention after the max attempts", null, RetryPolicy.getGiveUpCount());
+		writeExecutors(writer, MetricsRegistry.getInstance().getExecutors().values());
+		writeActions(writer, MetricsRegistry.getInstance());
+		writer.flush();
+	}
+
+	private static void write(PrintWriter writer, String name, String labels, double value) {
+		writer.print(name);
+		if (labels != null && !labels.isEmpty())
+			writer.append('{').append(labels).append('}');
+		writer.append(' ').println(format(value));
+	}
+
+	private static void write(PrintWriter writer, String name, String type, String help, String labels,
+			double value) {
+		writer.append("# HELP ").append(name).append(' ').println(help);
+		writer.append("# TYPE ").append(name).append(' ').println(type);
+		write(writer, name, labels, value);
+	}
+
+	/**
+	 * Write a metric of several series, ie.: one per pool.
+	 */
+	private static <T> void write(PrintWriter writer, String name, String type, String help, Collection<T> sources,
+			Function<T, String> labels, ToDoubleFunction<T> value) {
+		writer.append("# HELP ").append(name).append(' ').println(help);
+		writer.append("# TYPE ").append(name).append(' ').println(type);
+		for (T source : sources)
+			write(writer, name, labels.apply(source), value.applyAsDouble(source));
+	}
+
+	private static String format(double value) {
+		if (value == (long) value)
+			return Long.toString((long) value);
+		return Double.toString(value);
+	}
+
+	private static String label(String name, String value) {
+		return name + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+	}
+
+	private static void writeStatistics(PrintWriter writer, Statistics statistics) {
+		if (!statistics.isStatisticsEnabled())
+			return;
+		write(writer, "hibernate_sessions_opened_total", "counter", "Sessions opened", null,
+				statistics.getSessionOpenCount());
+		write(writer, "hibernate_sessions_closed_total", "counter", "Sessions closed", null,
+				statistics.getSessionCloseCount());
+		write(writer, "hibernate_transactions_total", "counter", "Transactions completed", null,
+				statistics.getTransactionCount());
+		write(writer, "hibernate_transactions_successful_total", "counter", "Transactions committed", null,
+				statistics.getSuccessfulTransactionCount());
+		write(writer, "hibernate_connections_obtained_total", "counter", "JDBC connections obtained", null,
+				statistics.getConnectCount());
+		write(writer, "hibernate_statements_prepared_total", "counter", "JDBC statements prepared", null,
+				statistics.getPrepareStatementCount());
+		write(writer, "hibernate_flushes_total", "counter", "Session flushes", null, statistics.getFlushCount());
+		write(writer, "hibernate_queries_executed_total", "counter", "HQL and criteria queries executed", null,
+				statistics.getQueryExecutionCount());
+		write(writer, "hibernate_query_execution_max_seconds", "gauge", "Slowest query execution time", null,
+				statistics.getQueryExecutionMaxTime() / 1000.0);
+		if (statistics instanceof SlowQueryStatisticsFactory.SlowQueryStatistics)
+			write(writer, "hibernate_queries_slow_total", "counter", "Queries slower than the slow query threshold",
+					null, ((SlowQueryStatisticsFactory.SlowQueryStatistics) statistics).getSlowQueryCount());
+
+		writer.println("# HELP hibernate_entities_total Entity operations");
+		writer.println("# TYPE hibernate_entities_total counter");
+		write(writer, "hibernate_entities_total", label("operation", "load"), statistics.getEntityLoadCount());
+		write(writer, "hibernate_entities_total", label("operation", "fetch"), statistics.getEntityFetchCount());
+		write(writer, "hibernate_entities_total", label("operation", "insert"), statistics.getEntityInsertCount());
+		write(writer, "hibernate_entities_total", label("operation", "update"), statistics.getEntityUpdateCount());
+		write(writer, "hibernate_entities_total", label("operation", "delete"), statistics.getEntityDeleteCount());
+
+		writer.println("# HELP hibernate_cache_requests_total Second-level and query cache requests");
+		writer.println("# TYPE hibernate_cache_requests_total counter");
+		write(writer, "hibernate_cache_requests_total", label("cache", "second_level") + "," + label("result", "hit"),
+				statistics.getSecondLevelCacheHitCount());
+		write(writer, "hibernate_cache_requests_total", label("cache", "second_level") + "," + label("result", "miss"),
+				statistics.getSecondLevelCacheMissCount());
+		write(writer, "hibernate_cache_requests_total", label("cache", "query") + "," + label("result", "hit"),
+				statistics.getQueryCacheHitCount());
+		write(writer, "hibernate_cache_requests_total", label("cache", "query") + "," + label("result", "miss"),
+				statistics.getQueryCacheMissCount());
+	}
+
+	private static void writeConnectionPools(PrintWriter writer, List<ConnectionPool> pools) {
+		Function<ConnectionPool, String> labels = pool -> label("pool", pool.getName());
+		write(writer, "connection_pool_size", "gauge", "Open connections", pools, labels, ConnectionPool::getSize);
+		write(writer, "connection_pool_active", "gauge", "Borrowed connections", pools, labels,
+				ConnectionPool::getActiveCount);
+		write(writer, "connection_pool_idle", "gauge", "Idle connections", pools, labels,
+				ConnectionPool::getIdleCount);
+		write(writer, "connection_pool_waiting", "gauge", "Threads waiting for a connection", pools, labels,
+				ConnectionPool::getWaitingCount);
+		write(writer, "connection_pool_acquired_total", "counter", "Connections borrowed", pools, labels,
+				ConnectionPool::getAcquiredCount);
+		write(writer, "connection_pool_timeouts_total", "counter", "Borrows timed out", pools, labels,
+				ConnectionPool::getTimeoutCount);
+		write(writer, "connection_pool_leaks_total", "counter", "Connections reported as leaked", pools, labels,
+				ConnectionPool::getLeakCount);
+	}
+
+	private static void writeEntityManagerPool(PrintWriter writer, EntityManagerPool pool) {
+		write(writer, "entity_manager_pool_active", "gauge", "Entity managers in use", null, pool.getActiveCount());
+		write(writer, "entity_manager_pool_available", "gauge", "Entity managers that can still be opened", null,
+				pool.getAvailableCount());
+		write(writer, "entity_manager_pool_waiting", "gauge", "Requests waiting for an entity manager", null,
+				pool.getWaitingCount());
+		write(writer, "entity_manager_pool_peak", "gauge", "Peak of entity managers in use", null,
+				pool.getPeakCount());
+		write(writer, "entity_manager_pool_timeouts_total", "counter", "Acquisitions timed out", null,
+				pool.getTimeoutCount());
+	}
+
+	private static void writeCacheRegions(PrintWriter writer, Collection<CacheRegion> regions) {
+		Function<CacheRegion, String> labels = region -> label("region", region.getName());
+		write(writer, "cache_region_size", "gauge", "Cached entries", regions, labels,
+				region -> region.getCache().getSize());
+		write(writer, "cache_region_hits_total", "counter", "Cache hits", regions, labels,
+				region -> region.getCache().getHitCount());
+		write(writer, "cache_region_misses_total", "counter", "Cache misses", regions, labels,
+				region -> region.getCache().getMissCount());
+		write(writer, "cache_region_puts_total", "counter", "Cache puts", regions, labels,
+				region -> region.getCache().getPutCount());
+		write(writer, "cache_region_evictions_total", "counter", "Entries evicted by size", regions, labels,
+				region -> region.getCache().getEvictionCount());
+		write(writer, "cache_region_expirations_total", "counter", "Entries expired", regions, labels,
+				region -> region.getCache().getExpirationCount());
+	}
+
+	private static void writeStatementCache(PrintWriter writer, StatementCache cache) {
+		write(writer, "statement_cache_size", "gauge", "Cached JPQL statements", null, cache.getSize());
+		write(writer, "statement_cache_hits_total", "counter", "Statement cache hits", null, cache.getHitCount());
+		write(writer, "statement_cache_misses_total", "counter", "Statement cache misses", null,
+				cache.getMissCount());
+	}
+
+	private static void writeExecutors(PrintWriter writer, Collection<ActionExecutor> executors) {
+		if (executors.isEmpty())
+			return;
+		Function<ActionExecutor, String> labels = executor -> label("controller", executor.getName());
+		write(writer, "controller_executor_active", "gauge", "Running async actions", executors, labels,
+				ActionExecutor::getActiveCount);
+		write(writer, "controller_executor_queued", "gauge", "Async actions waiting for a thread", executors, labels,
+				ActionExecutor::getQueuedCount);
+		write(writer, "controller_executor_rejected_total", "counter", "Async actions rejected", executors, labels,
+				ActionExecutor::getRejectedCount);
+	}
+
+	private static void writeActions(PrintWriter writer, MetricsRegistry registry) {
+		Map<List<String>, LatencyHistogram> histograms = registry.getActionHistograms();
+		if (histograms.isEmpty())
+			return;
+		writer.println("# HELP controller_action_duration_seconds Latency of the controller actions");
+		writer.println("# TYPE controller_action_duration_seconds histogram");
+		long[] bounds = LatencyHistogram.getBounds();
+		for (Map.Entry<List<String>, LatencyHistogram> entry : histograms.entrySet()) {
+			String labels = label("controller", entry.getKey().get(0)) + "," + label("action", entry.getKey().get(1));
+			long[] counts = entry.getValue().getCounts();
+			long cumulative = 0;
+			for (int i = 0; i < bounds.length; i++) {
+				cumulative += counts[i];
+				write(writer, "controller_action_duration_seconds_bucket",
+						labels + "," + label("le", format(bounds[i] / 1e9)), cumulative);
+			}
+			cumulative += counts[bounds.length];
+			write(writer, "controller_action_duration_seconds_bucket", labels + "," + label("le", "+Inf"),
+					cumulative);
+			write(writer, "controller_action_duration_seconds_sum", labels, entry.getValue().getSum() / 1e9);
+			write(writer, "controller_action_duration_seconds_count", labels, cumulative);
+		}
+	}
+
+}
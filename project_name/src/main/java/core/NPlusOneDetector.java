@@ -0,0 +1,151 @@
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.persister.entity.Joinable;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.jboss.logging.Logger;
+
+/**
+ * A development mode detector of N+1 selects: counts the statements prepared
+ * by a session, which is scoped by request ({@link EntityManagerFilter}), and
+ * flags a statement prepared threshold times, typically an association lazy
+ * loaded in a loop. The offending entity or collection role (ie.:
+ * "foo.bar.entities.Author.posts") is resolved from the table and key column
+ * of the statement.
+ *
+ * Installed on each session of the {@link EntityManagerPool} when the
+ * threshold is greater than 0, replacing the statement inspector of the
+ * session factory, if any.
+ *
+ * Settings (hibernate.cfg.xml):
+ *
+ * <code>
+ * hibernate.n_plus_one_detector.threshold (default 0, disabled)
+ * </code>
+ *
+ * {@link QueryBuilder#fetch(String...)}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class NPlusOneDetector implements StatementInspector {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String THRESHOLD = "hibernate.n_plus_one_detector.threshold";
+
+	private static final Logger LOG = Logger.getLogger(NPlusOneDetector.class);
+
+	/**
+	 * from table alias where alias.column = ? | in (
+	 */
+	private static final Pattern LOAD = Pattern
+			.compile("\\bfrom\\s+(\\S+)\\s+(\\S+)\\s+where\\s+\\2\\.(\\S+?)\\s*(=|in\\b)", Pattern.CASE_INSENSITIVE);
+
+	private static final AtomicLong DETECTION_COUNT = new AtomicLong();
+
+	private final SessionFactory entityManagerFactory;
+	private final int threshold;
+	private final Map<String, Integer> counts = new HashMap<String, Integer>();
+	private final List<String> detections = new ArrayList<String>();
+	private int statementCount = 0;
+
+	public NPlusOneDetector(SessionFactory entityManagerFactory, int threshold) {
+		this.entityManagerFactory = entityManagerFactory;
+		this.threshold = threshold;
+	}
+
+	/**
+	 * Return the detector of a session.
+	 *
+	 * @param entityManager
+	 *            The session
+	 * @return The detector or null if the session has none
+	 */
+	public static NPlusOneDetector of(Session entityManager) {
+		StatementInspector inspector = ((SharedSessionContractImplementor) entityManager).getJdbcSessionContext()
+				.getStatementInspector();
+		return inspector instanceof NPlusOneDetector ? (NPlusOneDetector) inspector : null;
+	}
+
+	/**
+	 * @return The number of N+1 selects flagged by all detectors
+	 */
+	public static long getDetectionCount() {
+		return DETECTION_COUNT.get();
+	}
+
+	@Override
+	public String inspect(String sql) {
+		statementCount++;
+		int count = counts.merge(sql, 1, Integer::sum);
+		if (count == threshold) {
+			String path = resolvePath(sql);
+			detections.add(path);
+			DETECTION_COUNT.incrementAndGet();
+			LOG.warnf("Possible N+1 selects loading %s: the same statement was prepared %d times in a session, "
+					+ "fetch it with QueryBuilder.fetch or batch fetching: %s", path, count, sql);
+		}
+		return sql;
+	}
+
+	/**
+	 * Resolve the entity or collection role loaded by a statement.
+	 *
+	 * @param sql
+	 *            The statement
+	 * @return The entity name or collection role, or the table if it is not
+	 *         mapped
+	 */
+	private String resolvePath(String sql) {
+		Matcher matcher = LOAD.matcher(sql);
+		if (!matcher.find())
+			return "unknown";
+		String table = matcher.group(1);
+		String column = matcher.group(3);
+
+		MetamodelImplementor metamodel = ((SessionFactoryImplementor) entityManagerFactory).getMetamodel();
+		List<Object> persisters = new ArrayList<Object>(metamodel.collectionPersisters().values());
+		persisters.addAll(metamodel.entityPersisters().values());
+		for (Object persister : persisters) {
+			if (!(persister instanceof Joinable))
+				continue;
+			Joinable joinable = (Joinable) persister;
+			if (joinable.getTableName().equalsIgnoreCase(table) && joinable.getKeyColumnNames().length == 1
+					&& joinable.getKeyColumnNames()[0].equalsIgnoreCase(column))
+				return joinable.getName();
+		}
+		return table;
+	}
+
+	public int getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * @return The number of statements prepared by the session
+	 */
+	public int getStatementCount() {
+		return statementCount;
+	}
+
+	/**
+	 * @return The entity names or collection roles flagged in the session
+	 */
+	public List<String> getDetections() {
+		return Collections.unmodifiableList(detections);
+	}
+
+}
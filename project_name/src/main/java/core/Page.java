@@ -0,0 +1,120 @@
+package core;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.persistence.PersistenceException;
+
+/**
+ * A page of a keyset (seek) pagination with an opaque continuation cursor.
+ * The cursor holds the order direction it was created for along with the key,
+ * so it can not continue a pagination in the opposite direction.
+ *
+ * {@link QueryBuilder#page(Long, int, String)}
+ * {@link GenericRepository#page(String, int, String)}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class Page<T> {
+
+	private List<T> items;
+	private String cursor;
+
+	public Page(List<T> items, String cursor) {
+		this.items = items;
+		this.cursor = cursor;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	/**
+	 * The cursor of the next page.
+	 *
+	 * @return The cursor or null if this is the last page
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
+	public boolean hasNext() {
+		return cursor != null;
+	}
+
+	/**
+	 * Create a page from rows fetched with one row more than the page limit,
+	 * the extra row only telling that there is a next page.
+	 *
+	 * @param rows
+	 *            Up to limit + 1 rows
+	 * @param limit
+	 *            The page limit, at least 1
+	 * @param direction
+	 *            The order direction of the rows, "ASC" || "DESC"
+	 * @param id
+	 *            Extracts the key of a row
+	 * @return A page
+	 * @throws IllegalArgumentException
+	 *             If the limit is invalid ({@link Page#checkLimit(int)})
+	 */
+	public static <T> Page<T> of(List<T> rows, int limit, String direction, Function<? super T, Long> id) {
+		checkLimit(limit);
+		if (rows.size() <= limit)
+			return new Page<T>(rows, null);
+		List<T> items = rows.subList(0, limit);
+		return new Page<T>(items, encode(id.apply(items.get(limit - 1)), direction));
+	}
+
+	/**
+	 * Check a page limit before fetching limit + 1 rows.
+	 *
+	 * @param limit
+	 *            The page limit
+	 * @throws IllegalArgumentException
+	 *             If the limit is not from 1 to Integer.MAX_VALUE - 1
+	 */
+	public static void checkLimit(int limit) throws IllegalArgumentException {
+		if (limit < 1 || limit == Integer.MAX_VALUE)
+			throw new IllegalArgumentException("Invalid page limit " + limit);
+	}
+
+	public static String encode(Long id, String direction) {
+		String cursor = direction + ":" + id;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Decode a cursor into the key it was created from.
+	 *
+	 * @param cursor
+	 *            The cursor or null for the first page
+	 * @param direction
+	 *            The order direction of the page, "ASC" || "DESC"
+	 * @return The key or null
+	 * @throws PersistenceException
+	 *             If the cursor is invalid or was created for another
+	 *             direction
+	 */
+	public static Long decode(String cursor, String direction) throws PersistenceException {
+		if (cursor == null || cursor.isEmpty())
+			return null;
+		String decoded;
+		try {
+			decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			throw new PersistenceException("Invalid page cursor " + cursor + ".", e);
+		}
+		int separator = decoded.indexOf(':');
+		if (separator < 0 || !decoded.substring(0, separator).equals(direction))
+			throw new PersistenceException("Page cursor " + cursor + " is not of direction " + direction + ".");
+		try {
+			return Long.valueOf(decoded.substring(separator + 1));
+		} catch (NumberFormatException e) {
+			throw new PersistenceException("Invalid page cursor " + cursor + ".", e);
+		}
+	}
+
+}
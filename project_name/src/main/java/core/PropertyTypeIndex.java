@@ -0,0 +1,184 @@
+package core;
+
+import java.text.ParseException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.MappingException;
+import org.hibernate.QueryException;
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.spi.MetamodelImplementor;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.Type;
+
+import util.Converters;
+
+/**
+ * The resolved property paths of the entities of a session factory, ie.:
+ * (Message.class, "user.profile.id") to the type of "id" and a converter of
+ * values to its class. A path is resolved once, on first use, walking the
+ * entity persisters of the metamodel; later lookups are two map reads.
+ *
+ * {@link HibernateUtil#getPropertyType(Class, String, SessionFactory)}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class PropertyTypeIndex {
+
+	private static final Map<SessionFactory, PropertyTypeIndex> INDEXES = new ConcurrentHashMap<SessionFactory, PropertyTypeIndex>();
+
+	/**
+	 * Creates the index of a session factory when it is built and discards it
+	 * when it is closed. Registered by
+	 * {@link HibernateUtil#createConfiguration(String)}.
+	 */
+	public static final SessionFactoryObserver OBSERVER = new SessionFactoryObserver() {
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void sessionFactoryCreated(SessionFactory factory) {
+			of(factory);
+		}
+
+		@Override
+		public void sessionFactoryClosed(SessionFactory factory) {
+			INDEXES.remove(factory);
+		}
+
+	};
+
+	/**
+	 * A resolved property path.
+	 */
+	public static class PropertyPath {
+
+		private final String path;
+		private final Type type;
+		private final Class<?> returnedClass;
+		private final Converters.Converter<?> converter;
+
+		private PropertyPath(String path, Type type) {
+			this.path = path;
+			this.type = type;
+			this.returnedClass = type.getReturnedClass();
+			this.converter = Converters.get(returnedClass);
+		}
+
+		public String getPath() {
+			return path;
+		}
+
+		public Type getType() {
+			return type;
+		}
+
+		public Class<?> getReturnedClass() {
+			return returnedClass;
+		}
+
+		/**
+		 * Convert a value to the class of this property.
+		 *
+		 * @param value
+		 *            The value (or array of values) to be converted
+		 * @return The converted value
+		 * @throws QueryException
+		 */
+		public Object parseValue(Object value) throws QueryException {
+			try {
+				return Converters.convert(returnedClass, converter, value);
+			} catch (ParseException e) {
+				throw new QueryException("Could not convert " + value + " to the type of property " + path, e);
+			}
+		}
+
+	}
+
+	private final SessionFactoryImplementor entityManagerFactory;
+	private final MetamodelImplementor metamodel;
+	private final Map<Class<?>, Map<String, PropertyPath>> paths = new ConcurrentHashMap<Class<?>, Map<String, PropertyPath>>();
+
+	private PropertyTypeIndex(SessionFactory entityManagerFactory) {
+		this.entityManagerFactory = (SessionFactoryImplementor) entityManagerFactory;
+		this.metamodel = this.entityManagerFactory.getMetamodel();
+	}
+
+	/**
+	 * Return the index of a session factory.
+	 *
+	 * @param entityManagerFactory
+	 *            The session factory
+	 * @return The property type index
+	 */
+	public static PropertyTypeIndex of(SessionFactory entityManagerFactory) {
+		PropertyTypeIndex index = INDEXES.get(entityManagerFactory);
+		if (index == null) {
+			// factories built without the observer are discarded once closed
+			INDEXES.keySet().removeIf(SessionFactory::isClosed);
+			index = INDEXES.computeIfAbsent(entityManagerFactory, PropertyTypeIndex::new);
+		}
+		return index;
+	}
+
+	/**
+	 * Return a property path of an entity, resolving it on first use.
+	 *
+	 * @param entityClass
+	 *            Entity class
+	 * @param propertyName
+	 *            Property name (ie.: 'id', 'user.id', 'user.profile.id',
+	 *            'user.posts.id')
+	 * @return The resolved property path
+	 * @throws QueryException
+	 */
+	public PropertyPath get(Class<?> entityClass, String propertyName) throws QueryException {
+		if (propertyName == null || propertyName.isEmpty())
+			throw new QueryException("Property name passed cannot be null or empty");
+
+		Map<String, PropertyPath> entityPaths = paths.get(entityClass);
+		if (entityPaths == null)
+			entityPaths = paths.computeIfAbsent(entityClass, c -> new ConcurrentHashMap<String, PropertyPath>());
+
+		PropertyPath path = entityPaths.get(propertyName);
+		if (path == null) {
+			path = resolve(entityClass, propertyName);
+			entityPaths.putIfAbsent(propertyName, path);
+		}
+		return path;
+	}
+
+	/**
+	 * Walk a property path through the entity persisters, collections being
+	 * walked through their element entity.
+	 */
+	private PropertyPath resolve(Class<?> entityClass, String propertyName) throws QueryException {
+		Class<?> currentClass = entityClass;
+		int start = 0;
+		while (true) {
+			int end = propertyName.indexOf('.', start);
+			String name = end < 0 ? propertyName.substring(start) : propertyName.substring(start, end);
+
+			Type type;
+			try {
+				type = metamodel.entityPersister(currentClass).getPropertyType(name);
+			} catch (MappingException e) {
+				throw new QueryException("Could not resolve property " + propertyName + " of " + entityClass.getName(),
+						e);
+			}
+
+			if (end < 0)
+				return new PropertyPath(propertyName, type);
+			if (type.isCollectionType())
+				type = ((CollectionType) type).getElementType(entityManagerFactory);
+			if (!type.isEntityType())
+				throw new QueryException("Property type " + name + " is not a entity.");
+
+			currentClass = type.getReturnedClass();
+			start = end + 1;
+		}
+	}
+
+}
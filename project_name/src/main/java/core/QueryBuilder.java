@@ -1,22 +1,32 @@
 package core;
 
+import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Map.Entry;
-import java.util.Random;
+import java.util.stream.Stream;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceException;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 
+import org.hibernate.QueryException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.query.Query;
+import org.hibernate.type.Type;
+
 import core.EntityModel;
 
 /**
- * A simple query (select statement) builder.
+ * A simple query (select statement) builder. The where clause DSL is shared
+ * with the bulk DML builders by {@link ConditionalBuilder}.
  *
  * References: http://docs.oracle.com/html/E13946_05/ejb3_langref.html
  * http://docs.sqlalchemy.org/en/latest/orm/query.html
@@ -33,67 +43,38 @@ import core.EntityModel;
 				.gt("profile.id", 2).between("id", 1, 10).desc("id");
 		TypedQuery<User> query = builder.build();
 		System.out.println(builder.statement());
-		// SELECT COUNT(DISTINCT a_885.id, a_885.name)
-		// FROM Message AS a_885 LEFT JOIN a_885.profile
-		// WHERE 1 = 1 AND a_885.id LIKE :a_885_p_0 AND a_885.profile.id > :a_885_p_1 AND a_885.id BETWEEN :a_885_p_2 AND :a_885_p_3
-		// ORDER BY a_885.id DESC
+		// SELECT COUNT(DISTINCT a_0.id, a_0.name)
+		// FROM User AS a_0 LEFT JOIN a_0.profile
+		// WHERE 1 = 1 AND a_0.id LIKE :p_0 AND a_0.profile.id > :p_1 AND a_0.id BETWEEN :p_2 AND :p_3
+		// ORDER BY a_0.id DESC
 	}
  * </code>
  *
  * @author Fernando Felix do Nascimento Junior
  */
-public class QueryBuilder<E extends EntityModel> {
+public class QueryBuilder<E extends EntityModel> extends ConditionalBuilder<E, QueryBuilder<E>> {
 
 	private boolean distinct = false;
-	private Class<E> entityClass;
 	private String agg;
-	private String alias;
-	private EntityManager entityManager;
 	private Set<String> selects = new LinkedHashSet<String>();
 	private Set<String> join = new LinkedHashSet<String>();
-	private Set<String> where = new LinkedHashSet<String>();
+	private Map<String, String> fetch = new LinkedHashMap<String, String>();
+	private Set<String> collectionFetch = new LinkedHashSet<String>();
 	private Set<String> orderBy = new LinkedHashSet<String>();
-	private Map<String, Object> parameters = new HashMap<String, Object>();
+	private Integer maxResults;
+	private boolean cacheable = false;
+	private String cacheRegion;
 
 	public QueryBuilder(Class<E> entityClass, EntityManager entityManager) {
-		this.entityClass = entityClass;
-		this.entityManager = entityManager;
-		this.alias = randomAlias();
-	}
-
-	private Class<E> getEntityClass() {
-		return entityClass;
-	}
-
-	private String randomAlias() {
-		Random random = new Random();
-		return "a_" + random.nextInt(10) + "" + random.nextInt(10) + "" + random.nextInt(10);
-	}
-
-	private String getAlias() {
-		return alias;
-	}
-
-	private String getEntityName() {
-		return getEntityClass().getSimpleName();
+		this(entityClass, entityManager, new Naming());
 	}
 
-	private String addParameter(Object value) {
-		String parameterName = nextParameterName();
-		parameters.put(nextParameterName(), value);
-		return parameterName;
+	QueryBuilder(Class<E> entityClass, EntityManager entityManager, Naming naming) {
+		super(entityClass, entityManager, naming);
 	}
 
-	private String nextParameterName() {
-		return ":" + getAlias() + "_" + "p_" + parameters.size();
-	}
-
-	private String adjustPath(String path) {
-		return getAlias() + "." + path;
-	}
-
-	private QueryBuilder<E> and(String... clause) {
-		where.add("AND " + String.join(" ", clause));
+	@Override
+	protected QueryBuilder<E> self() {
 		return this;
 	}
 
@@ -106,8 +87,10 @@ public class QueryBuilder<E extends EntityModel> {
 	 * @return this
 	 */
 	public QueryBuilder<E> select(String... paths) {
-		for (String path : paths)
+		for (String path : paths) {
+			record("select", path);
 			selects.add(adjustPath(path));
+		}
 		return this;
 	}
 
@@ -121,6 +104,7 @@ public class QueryBuilder<E extends EntityModel> {
 	 * @return this
 	 */
 	public QueryBuilder<E> distinct(boolean distinct) {
+		record("distinct", distinct);
 		this.distinct = distinct;
 		return this;
 	}
@@ -142,6 +126,7 @@ public class QueryBuilder<E extends EntityModel> {
 		function = function.toUpperCase();
 		if (!Arrays.asList("AVG", "MAX", "MIN", "SUM", "COUNT").contains(function))
 			throw new PersistenceException("Invalid aggregate function " + function + ".");
+		record("agg", function);
 		this.agg = function;
 		return this;
 	}
@@ -154,160 +139,254 @@ public class QueryBuilder<E extends EntityModel> {
 	 * @return this
 	 */
 	public QueryBuilder<E> unagg() {
+		record("unagg");
 		this.agg = null;
 		return this;
 	}
 
 	/**
-	 * 10.2.5.5. JPQL Conditional Expression Composition
+	 * Reference 10.2.3.5. JPQL Joins
 	 *
+	 * @param spec
+	 *            [LEFT [OUTER] | INNER] JOIN [FETCH]
 	 * @param path
-	 *            Path expression
-	 * @param operator
-	 *            IS [NOT] NULL, IS [NOT] EMPTY
+	 *            Join association path expression
 	 * @return this
 	 */
-	public QueryBuilder<E> conditional(String path, String operator) {
-		return and(adjustPath(path), operator, nextParameterName());
-	}
-
-	public QueryBuilder<E> isNull(String path) {
-		return conditional(path, "IS NULL");
-	}
-
-	public QueryBuilder<E> isNotNull(String path) {
-		return conditional(path, "IS NOT NULL");
-	}
-
-	public QueryBuilder<E> isEmpty(String path) {
-		return conditional(path, "IS EMPTY");
-	}
+	public QueryBuilder<E> join(String spec, String path) {
+		path = adjustPath(path);
+		List<String> keywords = Arrays.asList("LEFT", "OUTER", "INNER", "JOIN", "FETCH");
+		String[] specPartials = spec.trim().replaceAll("\\s+", " ").split(" ");
 
-	public QueryBuilder<E> isNotEmpty(String path) {
-		return conditional(path, "IS NOT EMPTY");
-	}
+		for (String specPartial : specPartials)
+			if (!keywords.contains(specPartial.toUpperCase()))
+				throw new PersistenceException("Join spec " + specPartial + " is not valid.");
 
-	/**
-	 * Return a shallow copy of the named parameter value map of the query.
-	 * 
-	 * @return Shallow copy of the named parameter value map of the query.
-	 */
-	public Map<String, Object> getParameters() {
-		return new HashMap<String, Object>(parameters);
+		record("join", spec, path);
+		join.add(String.join(" ", spec, path));
+		return this;
 	}
 
 	/**
-	 * 10.2.5.5. JPQL Conditional Expression Composition
+	 * Fetch associations along with the entities of the query, instead of
+	 * lazy loading them one by one (N+1 selects) when they are read. Each
+	 * path is fetched with all of its prefixes, ie.: "author.profile" fetches
+	 * "author" too.
 	 *
-	 * @param path
-	 *            Path expression
-	 * @param operator
-	 *            =, >, >=, <, <=, <>, [NOT] LIKE, [NOT] IN
-	 * @param value
-	 *            Path expression value
+	 * Entity associations are always fetched by LEFT JOIN FETCH. Collections
+	 * are also fetched by join, with DISTINCT, unless the query is limited:
+	 * joining them would make Hibernate apply the limit in memory, so they
+	 * are left to batch fetching (hibernate.default_batch_fetch_size).
+	 * Fetches are ignored when the query selects paths or aggregates.
+	 *
+	 * {@link NPlusOneDetector}
+	 *
+	 * @param paths
+	 *            Association paths (ie.: "author", "author.profile",
+	 *            "author.posts")
 	 * @return this
+	 * @throws PersistenceException
+	 *             If a path is not an association
 	 */
-	public QueryBuilder<E> conditional(String path, String operator, Object value) {
-		return and(adjustPath(path), operator, addParameter(value));
+	public QueryBuilder<E> fetch(String... paths) throws PersistenceException {
+		for (String path : paths) {
+			record("fetch", path);
+			int end = 0;
+			while (end >= 0) {
+				end = path.indexOf('.', end + 1);
+				addFetch(end < 0 ? path : path.substring(0, end));
+			}
+		}
+		return this;
 	}
 
-	public QueryBuilder<E> eq(String path, Object value) {
-		return conditional(path, "=", value);
-	}
+	private void addFetch(String path) throws PersistenceException {
+		if (fetch.containsKey(path))
+			return;
+		Type type;
+		try {
+			SessionFactory entityManagerFactory = getEntityManager().unwrap(Session.class).getSessionFactory();
+			type = PropertyTypeIndex.of(entityManagerFactory).get(getEntityClass(), path).getType();
+		} catch (QueryException e) {
+			throw new PersistenceException("Could not fetch " + path + ".", e);
+		}
+		if (!type.isAssociationType())
+			throw new PersistenceException("Property " + path + " of " + getEntityName() + " is not an association.");
 
-	public QueryBuilder<E> gt(String path, Object value) {
-		return conditional(path, ">", value);
+		int dot = path.lastIndexOf('.');
+		if (type.isCollectionType() || (dot > 0 && collectionFetch.contains(path.substring(0, dot))))
+			collectionFetch.add(path);
+		fetch.put(path, nextAlias());
 	}
 
-	public QueryBuilder<E> ge(String path, Object value) {
-		return conditional(path, ">=", value);
+	/**
+	 * Indicate if collections are fetched by join, which requires DISTINCT
+	 * root entities.
+	 */
+	private boolean isCollectionJoinFetched() {
+		return !collectionFetch.isEmpty() && maxResults == null && selects.isEmpty() && agg == null;
 	}
 
-	public QueryBuilder<E> lt(String path, Object value) {
-		return conditional(path, "<", value);
+	public QueryBuilder<E> orderBy(String path, String orderDirection) throws PersistenceException {
+		if (!Arrays.asList("ASC", "DESC").contains(orderDirection))
+			throw new PersistenceException("Invalid order direction " + orderDirection);
+		record("orderBy", path, orderDirection);
+		orderBy.add(adjustPath(path) + " " + orderDirection);
+		return this;
 	}
 
-	public QueryBuilder<E> le(String path, Object value) {
-		return conditional(path, "<=", value);
+	public QueryBuilder<E> asc(String path) throws PersistenceException {
+		return orderBy(path, "ASC");
 	}
 
-	public QueryBuilder<E> ne(String path, Object value) {
-		return conditional(path, "<>", value);
+	public QueryBuilder<E> desc(String path) throws PersistenceException {
+		return orderBy(path, "DESC");
 	}
 
-	public QueryBuilder<E> like(String path, Object value) {
-		return conditional(path, "LIKE", value);
+	/**
+	 * Limit the number of results of the query.
+	 *
+	 * @param maxResults
+	 *            The maximum number of results or null for no limit
+	 * @return this
+	 */
+	public QueryBuilder<E> limit(Integer maxResults) {
+		record("limit", maxResults != null);
+		this.maxResults = maxResults;
+		return this;
 	}
 
-	public QueryBuilder<E> notLike(String path, Object value) {
-		return conditional(path, "NOT LIKE", value);
+	/**
+	 * Cache the results of the query in the query cache
+	 * (hibernate.cache.use_query_cache). Results are invalidated whenever a
+	 * table of the query is changed.
+	 *
+	 * @return this
+	 */
+	public QueryBuilder<E> cacheable() {
+		return cacheable(null);
 	}
 
-	public QueryBuilder<E> in(String path, Object value) {
-		return conditional(path, "IN", value);
+	/**
+	 * Cache the results of the query in a query cache region.
+	 *
+	 * @param region
+	 *            The region name or null for the default region
+	 * @return this
+	 */
+	public QueryBuilder<E> cacheable(String region) {
+		this.cacheable = true;
+		this.cacheRegion = region;
+		return this;
 	}
 
-	public QueryBuilder<E> notIn(String path, Object value) {
-		return conditional(path, "NOT IN", value);
+	/**
+	 * Keyset (seek) pagination by id: select the rows after a key instead of
+	 * skipping an offset, so each page is an index range scan whatever its
+	 * position.
+	 *
+	 * Ex: WHERE a_0.id < :p_0 ORDER BY a_0.id DESC LIMIT ?
+	 *
+	 * @param afterId
+	 *            The id of the last row of the previous page or null for the
+	 *            first page
+	 * @param limit
+	 *            The page size
+	 * @param direction
+	 *            "ASC" || "DESC"
+	 * @return this
+	 */
+	public QueryBuilder<E> page(Long afterId, int limit, String direction) throws PersistenceException {
+		orderBy("id", direction);
+		if (afterId != null)
+			conditional("id", "DESC".equals(direction) ? "<" : ">", afterId);
+		return limit(limit);
 	}
 
-	public QueryBuilder<E> between(String path, Object startValue, Object endValue) {
-		return and(adjustPath(path), "BETWEEN", addParameter(startValue), "AND", addParameter(endValue));
+	/**
+	 * 10.2.1.1. JPQL Select Statement
+	 *
+	 * The statement is resolved from the {@link StatementCache} by the shape of
+	 * this builder and rendered only on a cache miss.
+	 *
+	 * @return selectClause fromClause [whereClause] [groupby_clause]
+	 *         [orderbyClause]
+	 */
+	public String statement() {
+		return getStatementCache().get(shape("SELECT"), this::render);
 	}
 
-	public QueryBuilder<E> exists(QueryBuilder<?> queryBuilder) {
-		if (this == queryBuilder || this.getAlias().equals(queryBuilder.getAlias()))
-			throw new PersistenceException("QueryBuilder parameter " + getAlias() + " can't be itself.");
-		and("EXISTS", ("(" + queryBuilder + ")").replaceAll("\n", " "));
-		parameters.putAll(queryBuilder.getParameters());
-		return this;
+	private String render() {
+		return String.join("\n", selectClause(), fromClause(), whereClause(), orderByClause());
 	}
 
 	/**
-	 * Reference 10.2.3.5. JPQL Joins
+	 * The statement counting the rows of this builder, without its select,
+	 * fetch and order by clauses. Rows are counted by DISTINCT root entity if
+	 * the builder joins or is distinct.
 	 *
-	 * @param spec
-	 *            [LEFT [OUTER] | INNER] JOIN [FETCH]
-	 * @param path
-	 *            Join association path expression
-	 * @return this
+	 * {@link QueryBuilder#count()}
+	 *
+	 * @return SELECT COUNT(*) fromClause [whereClause]
 	 */
-	public QueryBuilder<E> join(String spec, String path) {
-		path = adjustPath(path);
-		List<String> keywords = Arrays.asList("LEFT", "OUTER", "INNER", "JOIN", "FETCH");
-		String[] specPartials = spec.trim().replaceAll("\\s+", " ").split(" ");
-
-		for (String specPartial : specPartials)
-			if (!keywords.contains(specPartial.toUpperCase()))
-				throw new PersistenceException("Join spec " + specPartial + " is not valid.");
-
-		join.add(String.join(" ", spec, path));
-		return this;
+	public String countStatement() {
+		return getStatementCache().get(shape("COUNT"), () -> {
+			String count = distinct || !join.isEmpty() ? "COUNT(DISTINCT " + getAlias() + ")" : "COUNT(*)";
+			return String.join("\n", "SELECT " + count, fromClause(false), whereClause());
+		});
 	}
 
-	public QueryBuilder<E> orderBy(String path, String orderDirection) throws PersistenceException {
-		if (!Arrays.asList("ASC", "DESC").contains(orderDirection))
-			throw new PersistenceException("Invalid order direction " + orderDirection);
-		orderBy.add(adjustPath(path) + " " + orderDirection);
-		return this;
+	/**
+	 * The statement checking if this builder has a row, to be limited to one.
+	 *
+	 * {@link QueryBuilder#exists()}
+	 *
+	 * @return SELECT 1 fromClause [whereClause]
+	 */
+	public String existsStatement() {
+		return getStatementCache().get(shape("EXISTS"),
+				() -> String.join("\n", "SELECT 1", fromClause(false), whereClause()));
 	}
 
-	public QueryBuilder<E> asc(String path) throws PersistenceException {
-		return orderBy(path, "ASC");
+	/**
+	 * 10.2.9. JPQL Bulk Update and Delete
+	 *
+	 * {@link QueryBuilder#deleteWhere()}
+	 *
+	 * @return DELETE FROM entity AS alias [whereClause]
+	 * @throws PersistenceException
+	 *             If this builder joins, which bulk deletes do not support
+	 */
+	public String deleteStatement() throws PersistenceException {
+		if (!join.isEmpty())
+			throw new PersistenceException("Bulk delete of " + getEntityName() + " can't join " + join + ".");
+		return getStatementCache().get(shape("DELETE"),
+				() -> String.join("\n", "DELETE FROM " + getEntityName() + " AS " + getAlias(), whereClause()));
 	}
 
-	public QueryBuilder<E> desc(String path) throws PersistenceException {
-		return orderBy(path, "DESC");
+	/**
+	 * The key of a statement of this builder: its kind, entity, alias and the
+	 * calls building it.
+	 *
+	 * {@link ConditionalBuilder#getCalls()}
+	 *
+	 * @param kind
+	 *            The kind of statement (ie.: "SELECT", "COUNT" or the class of
+	 *            a constructor expression)
+	 * @return The shape of this builder
+	 */
+	private List<Object> shape(Object kind) {
+		return Arrays.asList(kind, getEntityClass(), getAlias(), getCalls());
 	}
 
 	/**
-	 * 10.2.1.1. JPQL Select Statement
+	 * Return the statement cache shared by all query builders, with its
+	 * hit/miss counters.
 	 *
-	 * @return selectClause fromClause [whereClause] [groupby_clause]
-	 *         [orderbyClause]
+	 * @return The statement cache
 	 */
-	public String statement() {
-		return String.join("\n", selectClause(), fromClause(), whereClause(), orderByClause());
+	public static StatementCache getStatementCache() {
+		return StatementCache.getInstance();
 	}
 
 	/**
@@ -316,29 +395,54 @@ public class QueryBuilder<E extends EntityModel> {
 	 * {@link QueryBuilder#agg(String)} {@link QueryBuilder#distinct(boolean)}
 	 * {@link QueryBuilder#select(String...)}
 	 *
-	 * @return SELECT [AGGREGATE]([DISTINCT] alias | selects)
+	 * @return SELECT [AGGREGATE]([DISTINCT] alias | selects) | SELECT DISTINCT
+	 *         alias | selects
 	 */
 	public String selectClause() {
 		String aggragate = this.agg != null ? this.agg : "";
-		String distinct = this.distinct ? "DISTINCT" : "";
+		String distinct = this.distinct || isCollectionJoinFetched() ? "DISTINCT" : "";
 		String selects = this.selects.isEmpty() ? getAlias() : String.join(", ", this.selects);
+		// HQL does not parse a parenthesized DISTINCT out of a function call
+		if (this.agg == null && !distinct.isEmpty())
+			return String.format("SELECT DISTINCT %s", selects);
 		return String.format("SELECT %s(%s %s)", aggragate, distinct, selects);
 	}
 
 	public String fromClause() {
-		return String.join(" ", "FROM", getEntityName(), "AS", getAlias(), joinClause());
+		return fromClause(true);
 	}
 
-	public String joinClause() {
-		if (join.size() == 0)
+	private String fromClause(boolean fetch) {
+		String fetchClause = fetch ? fetchClause() : "";
+		if (fetchClause.isEmpty())
+			return String.join(" ", "FROM", getEntityName(), "AS", getAlias(), joinClause());
+		return String.join(" ", "FROM", getEntityName(), "AS", getAlias(), joinClause(), fetchClause);
+	}
+
+	/**
+	 * {@link QueryBuilder#fetch(String...)}
+	 *
+	 * @return LEFT JOIN FETCH parent.association AS alias ...
+	 */
+	public String fetchClause() {
+		if (!selects.isEmpty() || agg != null)
 			return "";
-		return String.join(", ", join);
+		List<String> joins = new ArrayList<String>();
+		for (Entry<String, String> entry : fetch.entrySet()) {
+			String path = entry.getKey();
+			if (maxResults != null && collectionFetch.contains(path))
+				continue;
+			int dot = path.lastIndexOf('.');
+			String parent = dot < 0 ? getAlias() : fetch.get(path.substring(0, dot));
+			joins.add("LEFT JOIN FETCH " + parent + "." + path.substring(dot + 1) + " AS " + entry.getValue());
+		}
+		return String.join(" ", joins);
 	}
 
-	public String whereClause() {
-		if (where.size() == 0)
+	public String joinClause() {
+		if (join.size() == 0)
 			return "";
-		return "WHERE 1 = 1 " + String.join(" ", where);
+		return String.join(", ", join);
 	}
 
 	public String orderByClause() {
@@ -353,7 +457,7 @@ public class QueryBuilder<E extends EntityModel> {
 	 * @return A Query
 	 */
 	public TypedQuery<E> build() {
-		return build(entityClass);
+		return build(getEntityClass());
 	}
 
 	/**
@@ -364,12 +468,140 @@ public class QueryBuilder<E extends EntityModel> {
 	 * @return A typed query
 	 */
 	public <T> TypedQuery<T> build(Class<T> type) {
-		TypedQuery<T> query = entityManager.createQuery(this.statement(), type);
-		for (Entry<String, Object> entry : this.getParameters().entrySet())
-			query.setParameter(entry.getKey(), entry.getValue());
+		return build(statement(), type);
+	}
+
+	private <T> TypedQuery<T> build(String statement, Class<T> type) {
+		TypedQuery<T> query = bind(getEntityManager().createQuery(statement, type));
+		if (maxResults != null)
+			query.setMaxResults(maxResults);
+		if (cacheable) {
+			query.setHint(QueryHints.HINT_CACHEABLE, true);
+			if (cacheRegion != null)
+				query.setHint(QueryHints.HINT_CACHE_REGION, cacheRegion);
+		}
 		return query;
 	}
 
+	/**
+	 * Build a projection of the selected paths into a class by a constructor
+	 * expression, ie.: select("id", "content").as(MessageSummary.class). The
+	 * results are plain objects, not attached to the entity manager, so they
+	 * are neither hydrated as entities nor dirty checked.
+	 *
+	 * Reference: 10.2.7.2. JPQL Constructor Expressions in the SELECT Clause
+	 *
+	 * @param type
+	 *            A class with a public constructor taking the selected paths,
+	 *            in order
+	 * @return A typed query
+	 * @throws PersistenceException
+	 *             If no path is selected
+	 */
+	public <T> TypedQuery<T> as(Class<T> type) throws PersistenceException {
+		if (selects.isEmpty())
+			throw new PersistenceException("Select the constructor arguments of " + type.getName() + ".");
+		String statement = getStatementCache().get(shape(type), () -> {
+			String distinct = this.distinct ? "DISTINCT " : "";
+			String select = "SELECT " + distinct + "NEW " + type.getName() + "(" + String.join(", ", selects) + ")";
+			return String.join("\n", select, fromClause(false), whereClause(), orderByClause());
+		});
+		return build(statement, type);
+	}
+
+	/**
+	 * Build a projection of the selected paths into tuples, each element
+	 * aliased by its path with dots replaced by underscores (ie.: "user.name"
+	 * as "user_name"). Like {@link QueryBuilder#as(Class)}, the results are not
+	 * attached to the entity manager.
+	 *
+	 * @return A tuple query
+	 * @throws PersistenceException
+	 *             If no path is selected
+	 */
+	public TypedQuery<Tuple> tuples() throws PersistenceException {
+		if (selects.isEmpty())
+			throw new PersistenceException("Select the tuple elements of " + getEntityName() + ".");
+		String statement = getStatementCache().get(shape("TUPLE"), () -> {
+			List<String> elements = new ArrayList<String>();
+			for (String select : selects)
+				elements.add(select + " AS " + select.substring(getAlias().length() + 1).replace('.', '_'));
+			String distinct = this.distinct ? "DISTINCT " : "";
+			return String.join("\n", "SELECT " + distinct + String.join(", ", elements), fromClause(false),
+					whereClause(), orderByClause());
+		});
+		return build(statement, Tuple.class);
+	}
+
+	/**
+	 * Count the rows of this queryBuilder by SELECT COUNT(*), without loading
+	 * any entity.
+	 *
+	 * {@link QueryBuilder#countStatement()}
+	 *
+	 * @return The number of rows
+	 */
+	public long count() {
+		return bind(getEntityManager().createQuery(countStatement(), Long.class)).getSingleResult();
+	}
+
+	/**
+	 * Check if this queryBuilder has any row by SELECT 1 ... LIMIT 1, without
+	 * loading any entity.
+	 *
+	 * {@link QueryBuilder#existsStatement()}
+	 *
+	 * @return true if a row matches
+	 */
+	public boolean exists() {
+		return !bind(getEntityManager().createQuery(existsStatement(), Integer.class)).setMaxResults(1).getResultList()
+				.isEmpty();
+	}
+
+	/**
+	 * Delete the rows of this queryBuilder by a bulk DELETE statement, without
+	 * loading them. The deleted entities already loaded by the entity manager
+	 * are not removed from it; the second-level cache region of the entity is
+	 * evicted by Hibernate.
+	 *
+	 * {@link QueryBuilder#deleteStatement()}
+	 *
+	 * @return The number of deleted rows
+	 * @throws PersistenceException
+	 */
+	public int deleteWhere() throws PersistenceException {
+		return bind(getEntityManager().createQuery(deleteStatement())).executeUpdate();
+	}
+
+	/**
+	 * Stream the results of this queryBuilder.
+	 *
+	 * {@link QueryBuilder#stream(int)}
+	 *
+	 * @return A stream that must be closed
+	 */
+	public Stream<E> stream() {
+		return stream(ScrollableResultsIterator.DEFAULT_FETCH_SIZE);
+	}
+
+	/**
+	 * Stream the results of this queryBuilder through scrollable results in
+	 * the default scroll mode of the dialect (FORWARD_ONLY for SQLite). Each
+	 * entity is detached once the next one is read.
+	 *
+	 * {@link ScrollableResultsIterator}
+	 *
+	 * @param fetchSize
+	 *            The JDBC fetch size
+	 * @return A stream that must be closed
+	 */
+	@SuppressWarnings("unchecked")
+	public Stream<E> stream(int fetchSize) {
+		Query<E> query = build().unwrap(Query.class);
+		query.setFetchSize(fetchSize);
+		return new ScrollableResultsIterator<E>(query.scroll(), getEntityManager()).stream();
+	}
+
 	public String toString() {
 		return statement();
 	}
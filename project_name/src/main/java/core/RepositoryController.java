@@ -1,23 +1,68 @@
 package core;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
+import java.io.PrintWriter;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.GenericServlet;
 import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
 import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
 
+import org.hibernate.FlushMode;
 import org.hibernate.Session;
+import org.hibernate.SessionFactory;
 import org.hibernate.Transaction;
 
 /**
  * Simple repository servlet to serve as controller between Views (JSP pages)
  * and Repositories.
  * 
+ * In async mode (Servlet 3 asyncSupported), actions run on a bounded
+ * {@link ActionExecutor} instead of the container threads, so requests
+ * waiting on the SQLite write lock do not hold them. Init parameters:
+ * 
+ * <code>
+ * async (default false)
+ * async.threads (default 8)
+ * async.queue_size (default 64, actions waiting beyond are rejected)
+ * async.virtual_threads (default false, Java 21+)
+ * async.timeout (default 30000 ms), async.timeout.&lt;action&gt;
+ * async.rejection_status (default 503)
+ * async.timeout_status (default 503)
+ * </code>
+ * 
+ * Read-only requests and {@link Idempotent} actions failing on lock
+ * contention (SQLITE_BUSY, SQLITE_LOCKED) are rolled back and run again with
+ * a new session, as configured by the {@link RetryPolicy} settings, but not
+ * beyond the async timeout of the request.
+ * 
  * http://stackoverflow.com/questions/30550189/what-is-service-method-in-
  * httpservlet-class
  * 
@@ -27,29 +72,142 @@ public class RepositoryController<R extends GenericRepository<?>> extends HttpSe
 
 	private static final long serialVersionUID = 1L;
 
-	private R repository;
+	private static final Class<?>[] ACTION_PARAMETERS = { HttpServletRequest.class, HttpServletResponse.class };
+
+	private static final MethodType ACTION_TYPE = MethodType.methodType(void.class, RepositoryController.class,
+			ACTION_PARAMETERS);
+
+	private static final MethodType REPOSITORY_TYPE = MethodType.methodType(GenericRepository.class, Session.class);
+
+	private transient MethodHandle repositoryConstructor;
+	private transient Map<String, MethodHandle> actions;
+	private transient volatile String template;
+	private transient Set<String> idempotentActions;
+	private transient RetryPolicy retryPolicy;
+	private transient ActionExecutor executor;
+	private transient long asyncTimeout;
+	private transient int rejectionStatus;
+	private transient int timeoutStatus;
+
+	public static final String ASYNC = "async";
+	public static final String ASYNC_THREADS = "async.threads";
+	public static final String ASYNC_QUEUE_SIZE = "async.queue_size";
+	public static final String ASYNC_VIRTUAL_THREADS = "async.virtual_threads";
+	public static final String ASYNC_TIMEOUT = "async.timeout";
+	public static final String ASYNC_REJECTION_STATUS = "async.rejection_status";
+	public static final String ASYNC_TIMEOUT_STATUS = "async.timeout_status";
+
+	/**
+	 * Resolve the repository constructor and the action dispatch table once,
+	 * so that serving a request involves no reflection.
+	 * 
+	 * {@link RepositoryController#doAction(String, HttpServletRequest, HttpServletResponse)}
+	 */
+	@Override
+	public void init() throws ServletException {
+		super.init();
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		try {
+			repositoryConstructor = lookup
+					.findConstructor(getRepositoryClass(), MethodType.methodType(void.class, Session.class))
+					.asType(REPOSITORY_TYPE);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new ServletException("Repository " + getRepositoryClass().getName()
+					+ " must have a public constructor with a Session parameter.", e);
+		}
+		actions = resolveActions(lookup);
+		Set<String> idempotentActions = new HashSet<String>();
+		for (Method method : getClass().getMethods())
+			if (actions.containsKey(method.getName()) && method.isAnnotationPresent(Idempotent.class))
+				idempotentActions.add(method.getName());
+		this.idempotentActions = Collections.unmodifiableSet(idempotentActions);
+		SessionFactory entityManagerFactory = (SessionFactory) getServletContext()
+				.getAttribute("entity_manager_factory");
+		retryPolicy = RetryPolicy.create(entityManagerFactory != null ? entityManagerFactory.getProperties() : null);
+
+		if (Boolean.parseBoolean(getInitParameter(ASYNC))) {
+			asyncTimeout = Long.parseLong(getInitParameter(ASYNC_TIMEOUT, "30000"));
+			rejectionStatus = Integer.parseInt(getInitParameter(ASYNC_REJECTION_STATUS, "503"));
+			timeoutStatus = Integer.parseInt(getInitParameter(ASYNC_TIMEOUT_STATUS, "503"));
+			executor = new ActionExecutor(getServletName(), Integer.parseInt(getInitParameter(ASYNC_THREADS, "8")),
+					Integer.parseInt(getInitParameter(ASYNC_QUEUE_SIZE, "64")),
+					Boolean.parseBoolean(getInitParameter(ASYNC_VIRTUAL_THREADS)));
+			MetricsRegistry.getInstance().addExecutor(executor);
+		}
+	}
+
+	private String getInitParameter(String name, String defaultValue) {
+		String value = getInitParameter(name);
+		return value != null ? value : defaultValue;
+	}
 
 	@SuppressWarnings("unchecked")
 	private Class<R> getRepositoryClass() {
 		return ((Class<R>) ((ParameterizedType) getClass().getGenericSuperclass()).getActualTypeArguments()[0]);
 	}
 
+	/**
+	 * Map the name of each public method of this controller receiving a
+	 * request and a response, but the servlet ones, to its method handle.
+	 * 
+	 * @param lookup
+	 *            The lookup used to unreflect the methods
+	 * @return The action dispatch table
+	 * @throws ServletException
+	 */
+	private Map<String, MethodHandle> resolveActions(MethodHandles.Lookup lookup) throws ServletException {
+		Map<String, MethodHandle> actions = new HashMap<String, MethodHandle>();
+		for (Method method : getClass().getMethods()) {
+			Class<?> declaringClass = method.getDeclaringClass();
+			if (Modifier.isStatic(method.getModifiers()) || declaringClass == Object.class
+					|| declaringClass == GenericServlet.class || declaringClass == HttpServlet.class
+					|| declaringClass == RepositoryController.class
+					|| !Arrays.equals(method.getParameterTypes(), ACTION_PARAMETERS))
+				continue;
+			try {
+				actions.put(method.getName(), lookup.unreflect(method).asType(ACTION_TYPE));
+			} catch (IllegalAccessException e) {
+				throw new ServletException("Servlet action " + method.getName() + " can not be accessed.", e);
+			}
+		}
+		return Collections.unmodifiableMap(actions);
+	}
+
 	private R createRepository(Session entityManager) throws ServletException {
 		try {
-			return getRepositoryClass().getConstructor(Session.class).newInstance(entityManager);
-		} catch (NoSuchMethodException | SecurityException | InstantiationException | IllegalAccessException
-				| IllegalArgumentException | InvocationTargetException e) {
-			e.printStackTrace();
+			@SuppressWarnings("unchecked")
+			R repository = (R) (GenericRepository<?>) repositoryConstructor.invokeExact(entityManager);
+			return repository;
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
 			throw new ServletException(e);
 		}
 	}
 
-	protected R getRespository() {
-		return repository;
+	/**
+	 * Return the repository of a request. The controller is shared by all the
+	 * container threads, so any request state is kept by the request.
+	 * 
+	 * @param request
+	 *            The request
+	 * @return The request scoped repository
+	 */
+	@SuppressWarnings("unchecked")
+	protected R getRespository(HttpServletRequest request) {
+		return (R) request.getAttribute("repository");
+	}
+
+	/**
+	 * @return The group commit writer of the application or null if it is
+	 *         not enabled
+	 */
+	protected GroupCommitWriter getGroupCommitWriter(HttpServletRequest request) {
+		return (GroupCommitWriter) request.getServletContext().getAttribute("group_commit_writer");
 	}
 
 	private Session getEntityManager(HttpServletRequest request) {
-		return (Session) request.getSession(true).getAttribute("entity_manager");
+		return EntityManagerFilter.getEntityManager(request);
 	}
 
 	protected void forward(String path, HttpServletRequest request, HttpServletResponse response)
@@ -62,37 +220,603 @@ public class RepositoryController<R extends GenericRepository<?>> extends HttpSe
 		response.sendRedirect(path);
 	}
 
+	/**
+	 * Indicate if a request only reads, so it runs in a read-only transaction:
+	 * its entities are loaded read-only (no snapshot, no dirty checking), the
+	 * session is never flushed and its work is given reader connections,
+	 * which do not contend for the SQLite write lock.
+	 * 
+	 * @param request
+	 *            The request
+	 * @return true for GET and HEAD requests
+	 */
+	protected boolean isReadOnly(HttpServletRequest request) {
+		return "GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod());
+	}
+
+	/**
+	 * Indicate if the action of a request can be run again once rolled back,
+	 * so it is retried on lock contention by the {@link RetryPolicy}. A
+	 * read-only request of another method is not: it may have written through
+	 * the {@link GroupCommitWriter}, apart from the request transaction.
+	 * 
+	 * @param request
+	 *            The request
+	 * @return true for GET and HEAD requests and {@link Idempotent} actions
+	 */
+	protected boolean isIdempotent(HttpServletRequest request) {
+		String method = request.getMethod();
+		return "GET".equals(method) || "HEAD".equals(method) || idempotentActions.contains(getActionName(request));
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * The action of a request, for metrics: the action parameter or else the
+	 * request method.
+	 * 
+	 * @param request
+	 *            The request
+	 * @return The action name
+	 */
+	protected String getActionName(HttpServletRequest request) {
+		String action = request.getParameter("action");
+		return action != null ? action : request.getMethod().toLowerCase();
+	}
+
 	@Override
 	protected void service(HttpServletRequest request, HttpServletResponse response)
 			throws ServletException, IOException {
-		Session entityManager = getEntityManager(request);
-		repository = createRepository(entityManager);
-		String template = getRespository().getEntityName().toLowerCase() + ".jsp";
+		if (executor != null && request.isAsyncSupported()) {
+			serviceAsync(request, response);
+			return;
+		}
+		long start = System.nanoTime();
+		try {
+			String template = execute(request, response, () -> true, start, 0);
+			if (!response.isCommitted())
+				forward(template, request, response);
+		} finally {
+			recordLatency(getActionName(request), start);
+		}
+	}
+
+	private void recordLatency(String action, long start) {
+		MetricsRegistry.getInstance().getActionHistogram(getServletName(), action)
+				.record(System.nanoTime() - start);
+	}
+
+	/**
+	 * Run the action of a request in a transaction, read-only for
+	 * {@link RepositoryController#isReadOnly(HttpServletRequest)} requests,
+	 * retried with a new session on lock contention for
+	 * {@link RepositoryController#isIdempotent(HttpServletRequest)} ones.
+	 * 
+	 * @param commit
+	 *            Tells, once the action is done, if the transaction may be
+	 *            committed or must be rolled back
+	 * @param start
+	 *            The {@link System#nanoTime()} the request started at
+	 * @param timeout
+	 *            The time budget of the request in milliseconds, retries
+	 *            included, or 0 if none
+	 * @return The template of the response or null if the transaction was
+	 *         rolled back
+	 */
+	private String execute(HttpServletRequest request, HttpServletResponse response, BooleanSupplier commit,
+			long start, long timeout) throws ServletException {
+		for (int attempt = 1;; attempt++) {
+			try {
+				return executeOnce(request, response, commit);
+			} catch (ServletException e) {
+				long remaining = timeout > 0
+						? timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) : Long.MAX_VALUE;
+				if (response.isCommitted() || !isIdempotent(request)
+						|| !retryPolicy.retry(e.getCause(), attempt, remaining))
+					throw e;
+				// the session of a failed transaction can not be used again
+				EntityManagerFilter.releaseEntityManager(request);
+			}
+		}
+	}
 
-		Transaction transaction = repository.getEntityManager().getTransaction();
+	private String executeOnce(HttpServletRequest request, HttpServletResponse response, BooleanSupplier commit)
+			throws ServletException {
+		SQLiteConnectionProvider.setReadOnly(isReadOnly(request));
 		try {
-			transaction.begin();
-			super.service(request, response);
-			transaction.commit();
-		} catch (Exception e) {
-			if (transaction != null && transaction.isActive())
-				transaction.rollback();
-			throw new ServletException(e);
+			Session entityManager = getEntityManager(request);
+			R repository = createRepository(entityManager);
+			repository.setGroupCommitWriter(getGroupCommitWriter(request));
+			request.setAttribute("repository", repository);
+			String template = this.template;
+			if (template == null)
+				this.template = template = "WEB-INF/" + repository.getEntityName().toLowerCase() + ".jsp";
+
+			if (isReadOnly(request)) {
+				entityManager.setDefaultReadOnly(true);
+				entityManager.setHibernateFlushMode(FlushMode.MANUAL);
+			}
+
+			Transaction transaction = entityManager.getTransaction();
+			try {
+				// begun by the session so it takes a new second-level cache timestamp
+				entityManager.beginTransaction();
+				super.service(request, response);
+				if (!commit.getAsBoolean()) {
+					transaction.rollback();
+					return null;
+				}
+				transaction.commit();
+			} catch (Exception e) {
+				if (transaction != null && transaction.isActive())
+					transaction.rollback();
+				throw new ServletException(e);
+			}
+			return template;
+		} finally {
+			SQLiteConnectionProvider.setReadOnly(false);
 		}
+	}
 
-		if (!response.isCommitted())
-			forward("WEB-INF/" + template, request, response);
+	/**
+	 * Serve a request on the {@link ActionExecutor} of this controller, freeing
+	 * the container thread. Requests are rejected with async.rejection_status
+	 * when the executor is full, and answered with async.timeout_status when
+	 * their action times out.
+	 * 
+	 * The transaction of a timed out action is rolled back, but a timed out
+	 * request may still have written: a POST whose writes were submitted to
+	 * the {@link GroupCommitWriter} before the timeout may have been committed.
+	 */
+	private void serviceAsync(HttpServletRequest request, HttpServletResponse response) throws IOException {
+		AsyncAction action = new AsyncAction(request, response);
+		action.context.addListener(action);
+		try {
+			executor.execute(action);
+		} catch (RejectedExecutionException e) {
+			action.reject();
+		}
 	}
 
+	/**
+	 * The asynchronous processing of a request. The action and the timeout
+	 * race to respond; the entity manager is released once both the action
+	 * and the async processing (ie.: the JSP it dispatched to) are done.
+	 * 
+	 * The action only sees the request and the response through wrappers,
+	 * which are detached from them once the timeout responded or the async
+	 * processing completed, as the container may then recycle them: the
+	 * parameters are read from a copy taken up front, the attributes from a
+	 * copy taken on detach and the response is committed. The action thread
+	 * is also interrupted on timeout, and the action is skipped if it did not
+	 * start yet.
+	 */
+	private class AsyncAction implements Runnable, AsyncListener {
+
+		private static final int PENDING = 0;
+		private static final int ACTION = 1;
+		private static final int TIMEOUT = 2;
+
+		private final String actionName;
+		private final long timeout;
+		private final HttpServletResponse containerResponse;
+		private final AsyncRequest request;
+		private final AsyncResponse response;
+		private final AsyncContext context;
+		private final long start = System.nanoTime();
+		private final AtomicInteger responder = new AtomicInteger(PENDING);
+		private final AtomicInteger holders = new AtomicInteger(2);
+		private final ReentrantLock guard = new ReentrantLock();
+		private boolean detached;
+		private Thread thread;
+
+		private AsyncAction(HttpServletRequest request, HttpServletResponse response) {
+			this.actionName = getActionName(request);
+			this.containerResponse = response;
+			this.request = new AsyncRequest(request);
+			this.response = new AsyncResponse(response);
+			this.context = request.startAsync(this.request, this.response);
+			this.timeout = getAsyncTimeout(actionName);
+			this.context.setTimeout(timeout);
+		}
+
+		private boolean respondAs(int who) {
+			return responder.compareAndSet(PENDING, who) || responder.get() == who;
+		}
+
+		private void release() {
+			if (holders.decrementAndGet() == 0)
+				EntityManagerFilter.releaseEntityManager(request);
+		}
+
+		/**
+		 * Stop using the request and the response of the container, which must
+		 * be called by the guard holder.
+		 */
+		private void detach() {
+			if (!detached) {
+				request.detach();
+				detached = true;
+			}
+		}
+
+		@Override
+		public void run() {
+			guard.lock();
+			try {
+				if (detached) {
+					release();
+					return;
+				}
+				thread = Thread.currentThread();
+			} finally {
+				guard.unlock();
+			}
+			try {
+				String template = execute(request, response, () -> respondAs(ACTION), start, timeout);
+				// committed, so the timeout can not respond anymore
+				if (template == null)
+					return;
+				if (response.isCommitted())
+					context.complete();
+				else
+					context.dispatch(template.startsWith("/") ? template : "/" + template);
+			} catch (ServletException | RuntimeException e) {
+				log("Servlet action " + actionName + " failed.", e);
+				if (respondAs(ACTION))
+					respond(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+			} finally {
+				guard.lock();
+				try {
+					thread = null;
+					// clear an interruption of the timeout, the thread is reused
+					Thread.interrupted();
+				} finally {
+					guard.unlock();
+				}
+				release();
+			}
+		}
+
+		private void reject() {
+			release();
+			if (respondAs(ACTION)) {
+				containerResponse.setHeader("Retry-After", "1");
+				respond(rejectionStatus);
+			}
+		}
+
+		private void respond(int status) {
+			try {
+				if (!containerResponse.isCommitted())
+					containerResponse.sendError(status);
+			} catch (IOException e) {
+				log("Could not respond " + status + ".", e);
+			} finally {
+				context.complete();
+			}
+		}
+
+		@Override
+		public void onTimeout(AsyncEvent event) throws IOException {
+			guard.lock();
+			try {
+				if (!respondAs(TIMEOUT))
+					return;
+				detach();
+				if (thread != null)
+					thread.interrupt();
+			} finally {
+				guard.unlock();
+			}
+			respond(timeoutStatus);
+		}
+
+		@Override
+		public void onComplete(AsyncEvent event) throws IOException {
+			recordLatency(actionName, start);
+			guard.lock();
+			try {
+				detach();
+			} finally {
+				guard.unlock();
+			}
+			release();
+		}
+
+		@Override
+		public void onError(AsyncEvent event) throws IOException {
+		}
+
+		@Override
+		public void onStartAsync(AsyncEvent event) throws IOException {
+		}
+
+		/**
+		 * The request of the action: its parameters are copied up front and its
+		 * attributes on detach. The entity manager then belongs to the action,
+		 * it is removed from the container request.
+		 */
+		private class AsyncRequest extends HttpServletRequestWrapper {
+
+			private final Map<String, String[]> parameters;
+			private final String method;
+			private final ServletContext servletContext;
+			private Map<String, Object> attributes;
+
+			private AsyncRequest(HttpServletRequest request) {
+				super(request);
+				this.parameters = Collections
+						.unmodifiableMap(new HashMap<String, String[]>(request.getParameterMap()));
+				this.method = request.getMethod();
+				this.servletContext = request.getServletContext();
+			}
+
+			private void detach() {
+				attributes = new HashMap<String, Object>();
+				for (Enumeration<String> names = super.getAttributeNames(); names.hasMoreElements();) {
+					String name = names.nextElement();
+					attributes.put(name, super.getAttribute(name));
+				}
+				super.removeAttribute("entity_manager");
+			}
+
+			@Override
+			public String getParameter(String name) {
+				String[] values = parameters.get(name);
+				return values != null && values.length > 0 ? values[0] : null;
+			}
+
+			@Override
+			public Map<String, String[]> getParameterMap() {
+				return parameters;
+			}
+
+			@Override
+			public Enumeration<String> getParameterNames() {
+				return Collections.enumeration(parameters.keySet());
+			}
+
+			@Override
+			public String[] getParameterValues(String name) {
+				String[] values = parameters.get(name);
+				return values != null ? values.clone() : null;
+			}
+
+			@Override
+			public String getMethod() {
+				return method;
+			}
+
+			@Override
+			public ServletContext getServletContext() {
+				return servletContext;
+			}
+
+			@Override
+			public Object getAttribute(String name) {
+				guard.lock();
+				try {
+					return detached ? attributes.get(name) : super.getAttribute(name);
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public Enumeration<String> getAttributeNames() {
+				guard.lock();
+				try {
+					return detached ? Collections.enumeration(new HashSet<String>(attributes.keySet()))
+							: super.getAttributeNames();
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public void setAttribute(String name, Object value) {
+				guard.lock();
+				try {
+					if (!detached)
+						super.setAttribute(name, value);
+					else if (value == null)
+						attributes.remove(name);
+					else
+						attributes.put(name, value);
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public void removeAttribute(String name) {
+				guard.lock();
+				try {
+					if (detached)
+						attributes.remove(name);
+					else
+						super.removeAttribute(name);
+				} finally {
+					guard.unlock();
+				}
+			}
+
+		}
+
+		/**
+		 * The response of the action, committed once detached: what the action
+		 * then sends is discarded.
+		 */
+		private class AsyncResponse extends HttpServletResponseWrapper {
+
+			private AsyncResponse(HttpServletResponse response) {
+				super(response);
+			}
+
+			@Override
+			public boolean isCommitted() {
+				guard.lock();
+				try {
+					return detached || super.isCommitted();
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public void sendError(int status) throws IOException {
+				guard.lock();
+				try {
+					if (!detached)
+						super.sendError(status);
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public void sendError(int status, String message) throws IOException {
+				guard.lock();
+				try {
+					if (!detached)
+						super.sendError(status, message);
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public void sendRedirect(String location) throws IOException {
+				guard.lock();
+				try {
+					if (!detached)
+						super.sendRedirect(location);
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public void setStatus(int status) {
+				guard.lock();
+				try {
+					if (!detached)
+						super.setStatus(status);
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public void setHeader(String name, String value) {
+				guard.lock();
+				try {
+					if (!detached)
+						super.setHeader(name, value);
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public void addHeader(String name, String value) {
+				guard.lock();
+				try {
+					if (!detached)
+						super.addHeader(name, value);
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public void flushBuffer() throws IOException {
+				guard.lock();
+				try {
+					if (!detached)
+						super.flushBuffer();
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public PrintWriter getWriter() throws IOException {
+				guard.lock();
+				try {
+					if (detached)
+						throw new IllegalStateException("Response of servlet action " + actionName + " is detached.");
+					return super.getWriter();
+				} finally {
+					guard.unlock();
+				}
+			}
+
+			@Override
+			public ServletOutputStream getOutputStream() throws IOException {
+				guard.lock();
+				try {
+					if (detached)
+						throw new IllegalStateException("Response of servlet action " + actionName + " is detached.");
+					return super.getOutputStream();
+				} finally {
+					guard.unlock();
+				}
+			}
+
+		}
+
+	}
+
+	/**
+	 * The timeout of an action: the async.timeout.&lt;action&gt; or else the
+	 * async.timeout init parameter.
+	 * 
+	 * @param action
+	 *            The action name
+	 * @return The timeout in milliseconds
+	 */
+	protected long getAsyncTimeout(String action) {
+		String timeout = getInitParameter(ASYNC_TIMEOUT + "." + action);
+		return timeout != null ? Long.parseLong(timeout) : asyncTimeout;
+	}
+
+	/**
+	 * @return The executor of the async mode or null if it is disabled
+	 */
+	public ActionExecutor getExecutor() {
+		return executor;
+	}
+
+	@Override
+	public void destroy() {
+		if (executor != null) {
+			MetricsRegistry.getInstance().removeExecutor(executor);
+			executor.shutdown(asyncTimeout);
+		}
+		super.destroy();
+	}
+
+	/**
+	 * Dispatch a request to a public action method of this controller.
+	 * 
+	 * @param action
+	 *            The action (method) name
+	 */
 	protected void doAction(String action, HttpServletRequest request, HttpServletResponse response)
 			throws ServletException, IOException {
+		MethodHandle method = actions.get(action);
+		if (method == null)
+			throw new ServletException("Servlet action " + action + " does not exist or can not be accessed.");
 		try {
-			Method method = this.getClass().getMethod(action, HttpServletRequest.class, HttpServletResponse.class);
-			method.invoke(this, request, response);
-		} catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException
-				| InvocationTargetException e) {
-			e.printStackTrace();
-			throw new ServletException("Servlet action " + action + " does not exist or can not be accessed.", e);
+			method.invokeExact((RepositoryController<?>) this, request, response);
+		} catch (ServletException | IOException | RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new ServletException(e);
 		}
 	}
 
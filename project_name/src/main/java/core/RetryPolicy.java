@@ -0,0 +1,197 @@
+package core;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.exception.LockAcquisitionException;
+import org.jboss.logging.Logger;
+
+/**
+ * A retry policy of transactions failing on lock contention: SQLITE_BUSY or
+ * SQLITE_LOCKED, converted by {@link org.hibernate.dialect.SQLiteDialect} to
+ * a {@link LockAcquisitionException} or raised as a plain SQLException (ie.:
+ * on commit). The unit of work is rolled back and run again, after an
+ * exponential backoff with full jitter (a random delay up to
+ * min(max_backoff, initial_backoff * 2^(attempt - 1))), at most max_attempts
+ * times in all. The backoff is waited by the thread of the unit of work, so
+ * a unit of work with a time budget (ie.: an async request and its timeout)
+ * is not retried once the backoff would exhaust it.
+ *
+ * Only units of work that can be run again may be retried: GET and HEAD
+ * requests and {@link Idempotent} actions of controllers
+ * ({@link RepositoryController}), and
+ * the group transactions of the {@link GroupCommitWriter}.
+ *
+ * Settings (hibernate.cfg.xml):
+ *
+ * <code>
+ * hibernate.retry.max_attempts (default 3, 1 disables)
+ * hibernate.retry.initial_backoff (default 10 ms)
+ * hibernate.retry.max_backoff (default 1000 ms)
+ * </code>
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class RetryPolicy {
+
+	public static final String MAX_ATTEMPTS = "hibernate.retry.max_attempts";
+	public static final String INITIAL_BACKOFF = "hibernate.retry.initial_backoff";
+	public static final String MAX_BACKOFF = "hibernate.retry.max_backoff";
+
+	private static final Logger LOG = Logger.getLogger(RetryPolicy.class);
+
+	private static final int SQLITE_BUSY = 5;
+	private static final int SQLITE_LOCKED = 6;
+
+	private static final AtomicLong RETRY_COUNT = new AtomicLong();
+	private static final AtomicLong GIVE_UP_COUNT = new AtomicLong();
+
+	private int maxAttempts;
+	private long initialBackoff;
+	private long maxBackoff;
+
+	public RetryPolicy(int maxAttempts, long initialBackoff, long maxBackoff) {
+		if (maxAttempts < 1 || initialBackoff < 0 || maxBackoff < initialBackoff)
+			throw new IllegalArgumentException("Invalid max attempts " + maxAttempts + " or backoff ["
+					+ initialBackoff + ", " + maxBackoff + "] of retry policy");
+		this.maxAttempts = maxAttempts;
+		this.initialBackoff = initialBackoff;
+		this.maxBackoff = maxBackoff;
+	}
+
+	/**
+	 * Create a policy configured by the session factory properties.
+	 *
+	 * @param properties
+	 *            The session factory properties or null for the defaults
+	 * @return A retry policy
+	 */
+	public static RetryPolicy create(Map<String, Object> properties) {
+		if (properties == null)
+			return new RetryPolicy(3, 10, 1000);
+		int maxAttempts = Integer.parseInt(String.valueOf(properties.getOrDefault(MAX_ATTEMPTS, "3")));
+		long initialBackoff = Long.parseLong(String.valueOf(properties.getOrDefault(INITIAL_BACKOFF, "10")));
+		long maxBackoff = Long.parseLong(String.valueOf(properties.getOrDefault(MAX_BACKOFF, "1000")));
+		return new RetryPolicy(maxAttempts, initialBackoff, maxBackoff);
+	}
+
+	/**
+	 * @return The number of units of work run again by all policies
+	 */
+	public static long getRetryCount() {
+		return RETRY_COUNT.get();
+	}
+
+	/**
+	 * @return The number of units of work failing on lock contention after
+	 *         max_attempts, by all policies
+	 */
+	public static long getGiveUpCount() {
+		return GIVE_UP_COUNT.get();
+	}
+
+	/**
+	 * Check if an error is caused by lock contention.
+	 *
+	 * @param e
+	 *            The error
+	 * @return true if a cause is SQLITE_BUSY or SQLITE_LOCKED
+	 */
+	public boolean isRetryable(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof LockAcquisitionException)
+				return true;
+			if (cause instanceof SQLException) {
+				// primary result code of the extended ones (ie.: SQLITE_BUSY_SNAPSHOT)
+				int errorCode = ((SQLException) cause).getErrorCode() & 0xff;
+				if (errorCode == SQLITE_BUSY || errorCode == SQLITE_LOCKED)
+					return true;
+			}
+			if (cause.getCause() == cause)
+				break;
+		}
+		return false;
+	}
+
+	/**
+	 * Decide if a failed unit of work is run again, waiting the backoff of the
+	 * attempt if so.
+	 *
+	 * @param e
+	 *            The error of the attempt, whose work was rolled back
+	 * @param attempt
+	 *            The failed attempt, from 1
+	 * @return true if the work must be run again
+	 */
+	public boolean retry(Throwable e, int attempt) {
+		return retry(e, attempt, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Decide if a failed unit of work is run again within a time budget,
+	 * waiting the backoff of the attempt if so. It is not if the backoff
+	 * would leave it no time to run.
+	 *
+	 * @param e
+	 *            The error of the attempt, whose work was rolled back
+	 * @param attempt
+	 *            The failed attempt, from 1
+	 * @param remaining
+	 *            The time left to the unit of work in milliseconds
+	 * @return true if the work must be run again
+	 */
+	public boolean retry(Throwable e, int attempt, long remaining) {
+		if (!isRetryable(e))
+			return false;
+		if (attempt >= maxAttempts) {
+			GIVE_UP_COUNT.incrementAndGet();
+			LOG.warnf("Giving up a unit of work after %d attempts on lock contention: %s", attempt, e.getMessage());
+			return false;
+		}
+		long backoff = backoff(attempt);
+		if (backoff >= remaining) {
+			GIVE_UP_COUNT.incrementAndGet();
+			LOG.warnf("Giving up a unit of work after %d attempts on lock contention, out of time: %s", attempt,
+					e.getMessage());
+			return false;
+		}
+		try {
+			Thread.sleep(backoff);
+		} catch (InterruptedException interrupted) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+		RETRY_COUNT.incrementAndGet();
+		LOG.debugf("Retrying a unit of work (attempt %d) on lock contention: %s", attempt + 1, e.getMessage());
+		return true;
+	}
+
+	/**
+	 * The backoff of an attempt, with full jitter.
+	 *
+	 * @param attempt
+	 *            The failed attempt, from 1
+	 * @return A random delay in milliseconds
+	 */
+	public long backoff(int attempt) {
+		long ceiling = initialBackoff << Math.min(attempt - 1, 30);
+		if (ceiling < 0 || ceiling > maxBackoff)
+			ceiling = maxBackoff;
+		return ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	public int getMaxAttempts() {
+		return maxAttempts;
+	}
+
+	public long getInitialBackoff() {
+		return initialBackoff;
+	}
+
+	public long getMaxBackoff() {
+		return maxBackoff;
+	}
+
+}
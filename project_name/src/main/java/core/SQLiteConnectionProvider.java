@@ -0,0 +1,238 @@
+package core;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.internal.ConnectionProviderInitiator;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+/**
+ * A pooled connection provider for SQLite, which allows a single writer at a
+ * time: write work is given one writer pool (one connection by default), so
+ * writers queue in the pool instead of failing with SQLITE_BUSY, and read
+ * work is spread over a pool of reader connections. Reader connections begin
+ * DEFERRED transactions (the driver default), which take no lock until the
+ * first read, and are query only, so a write by mistake fails instead of
+ * taking the write lock.
+ *
+ * Work is write work unless the thread is marked by
+ * {@link SQLiteConnectionProvider#setReadOnly(boolean)}.
+ *
+ * Settings (hibernate.cfg.xml):
+ *
+ * <code>
+ * hibernate.connection.provider_class core.SQLiteConnectionProvider
+ * hibernate.connection_pool.writers (default 1)
+ * hibernate.connection_pool.readers (default 4)
+ * hibernate.connection_pool.min_size (default 1, per pool)
+ * hibernate.connection_pool.acquire_timeout (default 30000 ms)
+ * hibernate.connection_pool.leak_detection_threshold (default 0 ms, disabled)
+ * hibernate.connection_pool.validation_timeout (default 5 s)
+ * hibernate.connection_pool.validation_idle_threshold (default 500 ms, idle time from which connections are validated)
+ * </code>
+ *
+ * {@link ConnectionPool} {@link SQLitePragmaProfile}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class SQLiteConnectionProvider implements ConnectionProvider, Configurable, Stoppable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String WRITERS = "hibernate.connection_pool.writers";
+	public static final String READERS = "hibernate.connection_pool.readers";
+	public static final String MIN_SIZE = "hibernate.connection_pool.min_size";
+	public static final String ACQUIRE_TIMEOUT = "hibernate.connection_pool.acquire_timeout";
+	public static final String LEAK_DETECTION_THRESHOLD = "hibernate.connection_pool.leak_detection_threshold";
+	public static final String VALIDATION_TIMEOUT = "hibernate.connection_pool.validation_timeout";
+	public static final String VALIDATION_IDLE_THRESHOLD = "hibernate.connection_pool.validation_idle_threshold";
+
+	private static final ThreadLocal<Boolean> READ_ONLY = ThreadLocal.withInitial(() -> false);
+
+	private ConnectionPool writerPool;
+	private ConnectionPool readerPool;
+
+	private String url;
+	private Properties connectionProperties;
+	private SQLitePragmaProfile pragmaProfile;
+	private boolean autocommit;
+	private Integer isolation;
+
+	/**
+	 * Mark the work of the current thread as read only (or not), so it is
+	 * given reader connections.
+	 *
+	 * @param readOnly
+	 *            true for read work, false for write work
+	 */
+	public static void setReadOnly(boolean readOnly) {
+		READ_ONLY.set(readOnly);
+	}
+
+	public static boolean isReadOnly() {
+		return READ_ONLY.get();
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public void configure(Map configurationValues) {
+		url = ConfigurationHelper.getString(AvailableSettings.URL, configurationValues);
+		if (url == null)
+			throw new HibernateException("JDBC URL was not specified by property " + AvailableSettings.URL);
+
+		String driverClass = ConfigurationHelper.getString(AvailableSettings.DRIVER, configurationValues);
+		if (driverClass != null)
+			loadDriverClass(driverClass);
+
+		connectionProperties = ConnectionProviderInitiator.getConnectionProperties(configurationValues);
+		String user = ConfigurationHelper.getString(AvailableSettings.USER, configurationValues);
+		if (user != null)
+			connectionProperties.setProperty("user", user);
+		String password = ConfigurationHelper.getString(AvailableSettings.PASS, configurationValues);
+		if (password != null)
+			connectionProperties.setProperty("password", password);
+
+		pragmaProfile = SQLitePragmaProfile.create(configurationValues);
+		autocommit = ConfigurationHelper.getBoolean(AvailableSettings.AUTOCOMMIT, configurationValues, false);
+		isolation = ConnectionProviderInitiator.extractIsolation(configurationValues);
+
+		int writers = ConfigurationHelper.getInt(WRITERS, configurationValues, 1);
+		int readers = ConfigurationHelper.getInt(READERS, configurationValues, 4);
+		int minSize = ConfigurationHelper.getInt(MIN_SIZE, configurationValues, 1);
+		long acquireTimeout = ConfigurationHelper.getLong(ACQUIRE_TIMEOUT, configurationValues, 30000);
+		long leakDetectionThreshold = ConfigurationHelper.getLong(LEAK_DETECTION_THRESHOLD, configurationValues, 0);
+		int validationTimeout = ConfigurationHelper.getInt(VALIDATION_TIMEOUT, configurationValues, 5);
+		long validationIdleThreshold = ConfigurationHelper.getLong(VALIDATION_IDLE_THRESHOLD, configurationValues, 500);
+
+		try {
+			writerPool = new ConnectionPool("writer", this::createConnection, Math.min(minSize, writers), writers,
+					acquireTimeout, leakDetectionThreshold, validationTimeout, validationIdleThreshold);
+			if (readers > 0)
+				readerPool = new ConnectionPool("reader", this::createReaderConnection, Math.min(minSize, readers), readers,
+						acquireTimeout, leakDetectionThreshold, validationTimeout, validationIdleThreshold);
+		} catch (SQLException e) {
+			throw new HibernateException("Could not open the connections of " + url, e);
+		}
+	}
+
+	private void loadDriverClass(String driverClass) {
+		try {
+			Class.forName(driverClass, true, Thread.currentThread().getContextClassLoader());
+		} catch (ClassNotFoundException e) {
+			try {
+				Class.forName(driverClass);
+			} catch (ClassNotFoundException e2) {
+				throw new HibernateException("Specified JDBC Driver " + driverClass + " class not found", e2);
+			}
+		}
+	}
+
+	/**
+	 * Open and initialize a physical connection, applying the PRAGMA profile.
+	 *
+	 * @return A new connection
+	 * @throws SQLException
+	 */
+	protected Connection createConnection() throws SQLException {
+		Connection connection = DriverManager.getConnection(url, connectionProperties);
+		try {
+			pragmaProfile.apply(connection);
+		} catch (SQLException e) {
+			connection.close();
+			throw e;
+		}
+		if (isolation != null)
+			connection.setTransactionIsolation(isolation);
+		if (connection.getAutoCommit() != autocommit)
+			connection.setAutoCommit(autocommit);
+		return connection;
+	}
+
+	/**
+	 * Open a reader connection: a connection of DEFERRED transactions (the
+	 * driver default) refusing any change to the database (PRAGMA query_only).
+	 *
+	 * @return A new connection
+	 * @throws SQLException
+	 */
+	protected Connection createReaderConnection() throws SQLException {
+		Connection connection = createConnection();
+		try (Statement statement = connection.createStatement()) {
+			statement.execute("PRAGMA query_only = 1");
+		} catch (SQLException e) {
+			connection.close();
+			throw e;
+		}
+		return connection;
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		if (isReadOnly() && readerPool != null)
+			return readerPool.borrow();
+		return writerPool.borrow();
+	}
+
+	@Override
+	public void closeConnection(Connection connection) throws SQLException {
+		if (writerPool.owns(connection))
+			writerPool.giveBack(connection);
+		else if (readerPool != null)
+			readerPool.giveBack(connection);
+		else
+			throw new SQLException("Connection was not provided by this provider.");
+	}
+
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return false;
+	}
+
+	public SQLitePragmaProfile getPragmaProfile() {
+		return pragmaProfile;
+	}
+
+	public ConnectionPool getWriterPool() {
+		return writerPool;
+	}
+
+	/**
+	 * @return The reader pool or null if readers are disabled
+	 */
+	public ConnectionPool getReaderPool() {
+		return readerPool;
+	}
+
+	@Override
+	public void stop() {
+		if (writerPool != null)
+			writerPool.close();
+		if (readerPool != null)
+			readerPool.close();
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public boolean isUnwrappableAs(Class unwrapType) {
+		return ConnectionProvider.class.equals(unwrapType) || SQLiteConnectionProvider.class.isAssignableFrom(unwrapType);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T unwrap(Class<T> unwrapType) {
+		if (isUnwrappableAs(unwrapType))
+			return (T) this;
+		throw new UnknownUnwrapTypeException(unwrapType);
+	}
+
+}
@@ -0,0 +1,120 @@
+package core;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.hibernate.HibernateException;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+/**
+ * The PRAGMA statements applied to each SQLite connection when it is opened
+ * by {@link SQLiteConnectionProvider}.
+ *
+ * Profiles:
+ *
+ * <ul>
+ * <li>default: the SQLite defaults (rollback journal, synchronous FULL).</li>
+ * <li>wal: journal_mode WAL (readers and the writer do not block each other),
+ * synchronous NORMAL (no fsync per commit, still safe in WAL mode), a 256 MB
+ * mmap_size, a 16 MB page cache, temporary tables in memory and a 5 s busy
+ * timeout. Use it with {@link org.hibernate.dialect.SQLiteWALDialect}.</li>
+ * </ul>
+ *
+ * Settings (hibernate.cfg.xml), each PRAGMA overriding the profile:
+ *
+ * <code>
+ * hibernate.sqlite.pragma_profile default | wal
+ * hibernate.sqlite.journal_mode
+ * hibernate.sqlite.synchronous
+ * hibernate.sqlite.mmap_size
+ * hibernate.sqlite.cache_size
+ * hibernate.sqlite.temp_store
+ * hibernate.sqlite.busy_timeout
+ * </code>
+ *
+ * {@link https://www.sqlite.org/pragma.html}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class SQLitePragmaProfile {
+
+	public static final String PROFILE = "hibernate.sqlite.pragma_profile";
+	public static final String PREFIX = "hibernate.sqlite.";
+
+	private static final String[] PRAGMAS = { "journal_mode", "synchronous", "mmap_size", "cache_size", "temp_store",
+			"busy_timeout" };
+
+	private static final Pattern VALUE = Pattern.compile("-?[A-Za-z0-9_]+");
+
+	private Map<String, String> pragmas;
+
+	public SQLitePragmaProfile(Map<String, String> pragmas) {
+		for (Map.Entry<String, String> pragma : pragmas.entrySet())
+			if (!VALUE.matcher(pragma.getValue()).matches())
+				throw new HibernateException("Invalid value " + pragma.getValue() + " of PRAGMA " + pragma.getKey());
+		this.pragmas = Collections.unmodifiableMap(new LinkedHashMap<String, String>(pragmas));
+	}
+
+	/**
+	 * Create the profile configured by Hibernate settings.
+	 *
+	 * @param configurationValues
+	 *            The Hibernate settings
+	 * @return A PRAGMA profile
+	 */
+	@SuppressWarnings("rawtypes")
+	public static SQLitePragmaProfile create(Map configurationValues) {
+		String profile = ConfigurationHelper.getString(PROFILE, configurationValues, "default");
+		Map<String, String> pragmas = new LinkedHashMap<String, String>();
+
+		if ("wal".equalsIgnoreCase(profile)) {
+			pragmas.put("journal_mode", "WAL");
+			pragmas.put("synchronous", "NORMAL");
+			pragmas.put("mmap_size", "268435456");
+			pragmas.put("cache_size", "-16000");
+			pragmas.put("temp_store", "MEMORY");
+			pragmas.put("busy_timeout", "5000");
+		} else if (!"default".equalsIgnoreCase(profile)) {
+			throw new HibernateException("Unknown SQLite PRAGMA profile " + profile);
+		}
+
+		for (String pragma : PRAGMAS) {
+			String value = ConfigurationHelper.getString(PREFIX + pragma, configurationValues);
+			if (value != null)
+				pragmas.put(pragma, value);
+		}
+
+		return new SQLitePragmaProfile(pragmas);
+	}
+
+	public Map<String, String> getPragmas() {
+		return pragmas;
+	}
+
+	public boolean isWriteAheadLogging() {
+		return "WAL".equalsIgnoreCase(pragmas.get("journal_mode"));
+	}
+
+	/**
+	 * Apply the PRAGMA statements to a connection. Must be called out of a
+	 * transaction, since the journal mode can not be changed within one.
+	 *
+	 * @param connection
+	 *            A new connection
+	 * @throws SQLException
+	 */
+	public void apply(Connection connection) throws SQLException {
+		if (pragmas.isEmpty())
+			return;
+		try (Statement statement = connection.createStatement()) {
+			for (Map.Entry<String, String> pragma : pragmas.entrySet())
+				statement.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+		}
+	}
+
+}
@@ -0,0 +1,97 @@
+package core;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.ScrollableResults;
+
+/**
+ * An iterator over the first column of scrollable results which detaches
+ * each entity from the entity manager once the next one is read, so the
+ * first-level cache (and the memory) stays constant regardless of the number
+ * of rows.
+ *
+ * Pending changes of the streamed entities are lost when they get detached,
+ * so flush them before streaming.
+ *
+ * Ex: <code>
+ * try (Stream<Message> messages = repository.stream()) {
+ *     messages.forEach(System.out::println);
+ * }
+ * </code>
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class ScrollableResultsIterator<E> implements Iterator<E>, AutoCloseable {
+
+	public static final int DEFAULT_FETCH_SIZE = 100;
+
+	private ScrollableResults results;
+	private EntityManager entityManager;
+	private E current = null;
+	private Boolean hasNext = null;
+	private boolean closed = false;
+
+	public ScrollableResultsIterator(ScrollableResults results, EntityManager entityManager) {
+		this.results = results;
+		this.entityManager = entityManager;
+	}
+
+	@Override
+	public boolean hasNext() {
+		if (hasNext == null) {
+			detachCurrent();
+			hasNext = !closed && results.next();
+			if (!hasNext)
+				close();
+		}
+		return hasNext;
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public E next() {
+		if (!hasNext())
+			throw new NoSuchElementException();
+		hasNext = null;
+		current = (E) results.get(0);
+		return current;
+	}
+
+	private void detachCurrent() {
+		if (current != null && entityManager.contains(current))
+			entityManager.detach(current);
+		current = null;
+	}
+
+	/**
+	 * Release the underlying JDBC result set. Called once the results are
+	 * exhausted.
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		results.close();
+	}
+
+	/**
+	 * Return a sequential stream over this iterator that releases the results
+	 * when closed.
+	 *
+	 * @return A stream
+	 */
+	public Stream<E> stream() {
+		Spliterator<E> spliterator = Spliterators.spliteratorUnknownSize(this,
+				Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(spliterator, false).onClose(this::close);
+	}
+
+}
@@ -0,0 +1,80 @@
+package core;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.stat.internal.ConcurrentStatisticsImpl;
+import org.hibernate.stat.spi.StatisticsFactory;
+import org.hibernate.stat.spi.StatisticsImplementor;
+import org.jboss.logging.Logger;
+
+/**
+ * Builds the Hibernate statistics of a session factory logging the queries
+ * slower than a threshold, instead of echoing every statement (show_sql).
+ * Only one of every sample slow queries is logged, all are counted.
+ *
+ * Settings (hibernate.cfg.xml):
+ *
+ * <code>
+ * hibernate.generate_statistics true
+ * hibernate.stats.factory core.SlowQueryStatisticsFactory
+ * hibernate.stats.slow_query_threshold (default 100 ms)
+ * hibernate.stats.slow_query_sample (default 1, every slow query)
+ * </code>
+ *
+ * {@link MetricsServlet}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class SlowQueryStatisticsFactory implements StatisticsFactory {
+
+	public static final String THRESHOLD = "hibernate.stats.slow_query_threshold";
+	public static final String SAMPLE = "hibernate.stats.slow_query_sample";
+
+	private static final Logger LOG = Logger.getLogger(SlowQueryStatisticsFactory.class);
+
+	/**
+	 * Statistics counting and sampling the slow queries.
+	 */
+	public static class SlowQueryStatistics extends ConcurrentStatisticsImpl {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long threshold;
+		private final long sample;
+		private final AtomicLong slowQueryCount = new AtomicLong();
+
+		public SlowQueryStatistics(SessionFactoryImplementor entityManagerFactory, long threshold, long sample) {
+			super(entityManagerFactory);
+			this.threshold = threshold;
+			this.sample = Math.max(1, sample);
+		}
+
+		@Override
+		public void queryExecuted(String hql, int rows, long time) {
+			super.queryExecuted(hql, rows, time);
+			if (time < threshold)
+				return;
+			if ((slowQueryCount.incrementAndGet() - 1) % sample == 0)
+				LOG.warnf("Slow query (%d ms, %d rows): %s", time, rows, hql);
+		}
+
+		public long getSlowQueryThreshold() {
+			return threshold;
+		}
+
+		public long getSlowQueryCount() {
+			return slowQueryCount.get();
+		}
+
+	}
+
+	@Override
+	public StatisticsImplementor buildStatistics(SessionFactoryImplementor entityManagerFactory) {
+		long threshold = ConfigurationHelper.getLong(THRESHOLD, entityManagerFactory.getProperties(), 100);
+		long sample = ConfigurationHelper.getLong(SAMPLE, entityManagerFactory.getProperties(), 1);
+		return new SlowQueryStatistics(entityManagerFactory, threshold, sample);
+	}
+
+}
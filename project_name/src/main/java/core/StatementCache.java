@@ -0,0 +1,120 @@
+package core;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A bounded (LRU) cache of rendered JPQL statements indexed by the shape of
+ * the builder that rendered them.
+ *
+ * Builders with the same entity, select, join, where and order by clauses
+ * resolve to the very same statement string, so besides skipping the
+ * rendering, the Hibernate query plan cache (keyed by the query string) is
+ * hit and the statement is compiled only once.
+ *
+ * {@link org.hibernate.engine.query.spi.QueryPlanCache}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class StatementCache {
+
+	public static final int DEFAULT_MAX_SIZE = 512;
+
+	private static final StatementCache INSTANCE = new StatementCache(DEFAULT_MAX_SIZE);
+
+	private final Map<List<Object>, String> statements;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+
+	public StatementCache(final int maxSize) {
+		if (maxSize < 1)
+			throw new IllegalArgumentException("Statement cache size must be positive.");
+		this.statements = new LinkedHashMap<List<Object>, String>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<List<Object>, String> eldest) {
+				return size() > maxSize;
+			}
+
+		};
+	}
+
+	/**
+	 * The cache shared by all query builders.
+	 *
+	 * @return The default statement cache
+	 */
+	public static StatementCache getInstance() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Return the statement of a shape, rendering and caching it if absent.
+	 *
+	 * @param shape
+	 *            An immutable key describing the statement
+	 * @param renderer
+	 *            Renders the statement on a cache miss
+	 * @return The statement
+	 */
+	public String get(List<Object> shape, Supplier<String> renderer) {
+		String statement;
+		lock.lock();
+		try {
+			statement = statements.get(shape);
+		} finally {
+			lock.unlock();
+		}
+
+		if (statement != null) {
+			hitCount.incrementAndGet();
+			return statement;
+		}
+
+		missCount.incrementAndGet();
+		statement = renderer.get();
+		lock.lock();
+		try {
+			statements.put(shape, statement);
+		} finally {
+			lock.unlock();
+		}
+		return statement;
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public int getSize() {
+		lock.lock();
+		try {
+			return statements.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void clear() {
+		lock.lock();
+		try {
+			statements.clear();
+		} finally {
+			lock.unlock();
+		}
+		hitCount.set(0);
+		missCount.set(0);
+	}
+
+}
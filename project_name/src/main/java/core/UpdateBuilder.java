@@ -0,0 +1,88 @@
+package core;
+
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+
+/**
+ * A bulk update statement builder. The dateUpdated of the entities is set to
+ * the execution time, as {@link GenericRepository#update(EntityModel)} does,
+ * unless it is set explicitly.
+ *
+ * <code>
+ * int count = new UpdateBuilder<Message>(Message.class, entityManager).set("content", "Archived")
+ * 		.lt("dateCreated", date).execute();
+ * // UPDATE Message AS a_0 SET a_0.content = :p_0, a_0.dateUpdated = :p_2
+ * // WHERE 1 = 1 AND a_0.dateCreated < :p_1
+ * </code>
+ *
+ * {@link BulkBuilder}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class UpdateBuilder<E extends EntityModel> extends BulkBuilder<E, UpdateBuilder<E>> {
+
+	private Map<String, String> sets = new LinkedHashMap<String, String>();
+
+	public UpdateBuilder(Class<E> entityClass, EntityManager entityManager) {
+		super(entityClass, entityManager);
+	}
+
+	@Override
+	protected UpdateBuilder<E> self() {
+		return this;
+	}
+
+	/**
+	 * Set a path to a value.
+	 *
+	 * @param path
+	 *            A state field path expression
+	 * @param value
+	 *            The new value, may be null
+	 * @return this
+	 */
+	public UpdateBuilder<E> set(String path, Object value) {
+		record("set", path);
+		sets.put(adjustPath(path), addParameter(value));
+		return this;
+	}
+
+	/**
+	 * @return UPDATE entity AS alias SET path = value, ... [whereClause]
+	 */
+	@Override
+	protected String render(String whereClause) {
+		if (sets.isEmpty())
+			throw new PersistenceException("Update of " + getEntityName() + " sets no path.");
+		StringBuilder setClause = new StringBuilder();
+		for (Map.Entry<String, String> entry : sets.entrySet()) {
+			if (setClause.length() > 0)
+				setClause.append(", ");
+			setClause.append(entry.getKey()).append(" = ").append(entry.getValue());
+		}
+		return String.join("\n", "UPDATE " + getEntityName() + " AS " + getAlias() + " SET " + setClause,
+				whereClause);
+	}
+
+	private void touch() {
+		if (!sets.containsKey(adjustPath("dateUpdated")))
+			set("dateUpdated", new Date());
+	}
+
+	@Override
+	public int execute() {
+		touch();
+		return super.execute();
+	}
+
+	@Override
+	public int execute(long chunkSize) throws PersistenceException {
+		touch();
+		return super.execute(chunkSize);
+	}
+
+}
@@ -0,0 +1,226 @@
+package core.cache;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded in-memory cache: at most maxSize entries, evicting the least
+ * recently used one, each entry expiring timeToLive milliseconds after it
+ * is put.
+ *
+ * Guarded by a lock rather than a monitor, so that virtual threads waiting
+ * for it unmount instead of pinning their carrier thread.
+ *
+ * {@link CacheRegion}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class BoundedCache<K, V> {
+
+	private static class Entry<V> {
+
+		private final V value;
+		private final long expires;
+
+		private Entry(V value, long expires) {
+			this.value = value;
+			this.expires = expires;
+		}
+
+	}
+
+	private final int maxSize;
+	private final long timeToLive;
+	private final Map<K, Entry<V>> entries;
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final AtomicLong hitCount = new AtomicLong();
+	private final AtomicLong missCount = new AtomicLong();
+	private final AtomicLong putCount = new AtomicLong();
+	private final AtomicLong evictionCount = new AtomicLong();
+	private final AtomicLong expirationCount = new AtomicLong();
+
+	/**
+	 * @param maxSize
+	 *            The maximum number of entries
+	 * @param timeToLive
+	 *            The lifetime of an entry in milliseconds, 0 for no expiration
+	 */
+	public BoundedCache(final int maxSize, long timeToLive) {
+		if (maxSize < 1 || timeToLive < 0)
+			throw new IllegalArgumentException("Invalid cache size " + maxSize + " or time to live " + timeToLive);
+		this.maxSize = maxSize;
+		this.timeToLive = timeToLive;
+		this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				if (size() <= maxSize)
+					return false;
+				evictionCount.incrementAndGet();
+				return true;
+			}
+
+		};
+	}
+
+	private boolean isExpired(Entry<V> entry, long now) {
+		return timeToLive > 0 && now >= entry.expires;
+	}
+
+	/**
+	 * Return the value of a key, counting a hit or a miss.
+	 *
+	 * @param key
+	 *            The key
+	 * @return The value or null if absent or expired
+	 */
+	public V get(K key) {
+		V value = peek(key);
+		if (value == null)
+			missCount.incrementAndGet();
+		else
+			hitCount.incrementAndGet();
+		return value;
+	}
+
+	/**
+	 * Return the value of a key without counting a hit or a miss.
+	 */
+	public V peek(K key) {
+		lock.lock();
+		try {
+			Entry<V> entry = entries.get(key);
+			if (entry == null)
+				return null;
+			if (isExpired(entry, System.currentTimeMillis())) {
+				entries.remove(key);
+				expirationCount.incrementAndGet();
+				return null;
+			}
+			return entry.value;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void put(K key, V value) {
+		lock.lock();
+		try {
+			entries.put(key, new Entry<V>(value, timeToLive > 0 ? System.currentTimeMillis() + timeToLive : 0));
+			putCount.incrementAndGet();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Put a value unless the key has one.
+	 *
+	 * @return true if the value was put
+	 */
+	public boolean putIfAbsent(K key, V value) {
+		lock.lock();
+		try {
+			if (peek(key) != null)
+				return false;
+			put(key, value);
+			return true;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public V remove(K key) {
+		lock.lock();
+		try {
+			Entry<V> entry = entries.remove(key);
+			return entry == null ? null : entry.value;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void clear() {
+		lock.lock();
+		try {
+			entries.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public boolean contains(K key) {
+		return peek(key) != null;
+	}
+
+	/**
+	 * @return A copy of the entries not expired
+	 */
+	public Map<K, V> toMap() {
+		lock.lock();
+		try {
+			long now = System.currentTimeMillis();
+			Map<K, V> map = new HashMap<K, V>();
+			for (Iterator<Map.Entry<K, Entry<V>>> i = entries.entrySet().iterator(); i.hasNext();) {
+				Map.Entry<K, Entry<V>> entry = i.next();
+				if (isExpired(entry.getValue(), now)) {
+					i.remove();
+					expirationCount.incrementAndGet();
+				} else {
+					map.put(entry.getKey(), entry.getValue().value);
+				}
+			}
+			return map;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public long getTimeToLive() {
+		return timeToLive;
+	}
+
+	public int getSize() {
+		lock.lock();
+		try {
+			return entries.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	public long getPutCount() {
+		return putCount.get();
+	}
+
+	/**
+	 * @return The number of entries evicted to bound the size
+	 */
+	public long getEvictionCount() {
+		return evictionCount.get();
+	}
+
+	public long getExpirationCount() {
+		return expirationCount.get();
+	}
+
+}
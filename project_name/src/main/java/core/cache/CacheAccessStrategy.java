@@ -0,0 +1,244 @@
+package core.cache;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.internal.DefaultCacheKeysFactory;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.CollectionRegionAccessStrategy;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.NaturalIdRegionAccessStrategy;
+import org.hibernate.cache.spi.access.RegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Access to the items of a {@link CacheRegion}, invalidating them on
+ * change: an item changed by a transaction is removed and locked until the
+ * transaction completes, and values read by transactions started before
+ * the lock was released are not cached. New entities are cached once
+ * their transaction commits.
+ *
+ * Supports the read-only, nonstrict-read-write and read-write access types
+ * (@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)).
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public abstract class CacheAccessStrategy implements RegionAccessStrategy {
+
+	protected final CacheRegion region;
+	protected final AccessType accessType;
+
+	protected CacheAccessStrategy(CacheRegion region, AccessType accessType) {
+		if (accessType == AccessType.TRANSACTIONAL)
+			throw new CacheException("Access type " + accessType.getExternalName() + " of region " + region.getName()
+					+ " is not supported.");
+		this.region = region;
+		this.accessType = accessType;
+	}
+
+	public AccessType getAccessType() {
+		return accessType;
+	}
+
+	protected void checkWritable() {
+		if (accessType == AccessType.READ_ONLY)
+			throw new UnsupportedOperationException("Can not update the read-only items of region " + region.getName());
+	}
+
+	@Override
+	public Object get(SharedSessionContractImplementor session, Object key, long txTimestamp) throws CacheException {
+		return region.getCache().get(key);
+	}
+
+	@Override
+	public boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, long txTimestamp,
+			Object version) throws CacheException {
+		return putFromLoad(session, key, value, txTimestamp, version, false);
+	}
+
+	@Override
+	public boolean putFromLoad(SharedSessionContractImplementor session, Object key, Object value, long txTimestamp,
+			Object version, boolean minimalPutOverride) throws CacheException {
+		return region.putFromLoad(key, value, txTimestamp, minimalPutOverride);
+	}
+
+	@Override
+	public SoftLock lockItem(SharedSessionContractImplementor session, Object key, Object version)
+			throws CacheException {
+		return region.lockItem(key);
+	}
+
+	@Override
+	public void unlockItem(SharedSessionContractImplementor session, Object key, SoftLock lock) throws CacheException {
+		region.unlockItem(key);
+	}
+
+	@Override
+	public SoftLock lockRegion() throws CacheException {
+		return region.lockRegion();
+	}
+
+	@Override
+	public void unlockRegion(SoftLock lock) throws CacheException {
+		region.unlockRegion();
+	}
+
+	@Override
+	public void remove(SharedSessionContractImplementor session, Object key) throws CacheException {
+		region.evict(key);
+	}
+
+	@Override
+	public void removeAll() throws CacheException {
+		region.evictAll();
+	}
+
+	@Override
+	public void evict(Object key) throws CacheException {
+		region.evict(key);
+	}
+
+	@Override
+	public void evictAll() throws CacheException {
+		region.evictAll();
+	}
+
+	/**
+	 * Access to the entities of a region.
+	 */
+	public static class EntityAccess extends CacheAccessStrategy implements EntityRegionAccessStrategy {
+
+		public EntityAccess(CacheRegion.EntityCacheRegion region, AccessType accessType) {
+			super(region, accessType);
+		}
+
+		@Override
+		public Object generateCacheKey(Object id, EntityPersister persister, SessionFactoryImplementor factory,
+				String tenantIdentifier) {
+			return DefaultCacheKeysFactory.createEntityKey(id, persister, factory, tenantIdentifier);
+		}
+
+		@Override
+		public Object getCacheKeyId(Object cacheKey) {
+			return DefaultCacheKeysFactory.getEntityId(cacheKey);
+		}
+
+		@Override
+		public EntityRegion getRegion() {
+			return (EntityRegion) region;
+		}
+
+		@Override
+		public boolean insert(SharedSessionContractImplementor session, Object key, Object value, Object version)
+				throws CacheException {
+			return false;
+		}
+
+		@Override
+		public boolean afterInsert(SharedSessionContractImplementor session, Object key, Object value,
+				Object version) throws CacheException {
+			return region.putIfUnlocked(key, value);
+		}
+
+		@Override
+		public boolean update(SharedSessionContractImplementor session, Object key, Object value,
+				Object currentVersion, Object previousVersion) throws CacheException {
+			checkWritable();
+			return false;
+		}
+
+		@Override
+		public boolean afterUpdate(SharedSessionContractImplementor session, Object key, Object value,
+				Object currentVersion, Object previousVersion, SoftLock lock) throws CacheException {
+			region.unlockItem(key);
+			return false;
+		}
+
+	}
+
+	/**
+	 * Access to the collections of a region.
+	 */
+	public static class CollectionAccess extends CacheAccessStrategy implements CollectionRegionAccessStrategy {
+
+		public CollectionAccess(CacheRegion.CollectionCacheRegion region, AccessType accessType) {
+			super(region, accessType);
+		}
+
+		@Override
+		public Object generateCacheKey(Object id, CollectionPersister persister, SessionFactoryImplementor factory,
+				String tenantIdentifier) {
+			return DefaultCacheKeysFactory.createCollectionKey(id, persister, factory, tenantIdentifier);
+		}
+
+		@Override
+		public Object getCacheKeyId(Object cacheKey) {
+			return DefaultCacheKeysFactory.getCollectionId(cacheKey);
+		}
+
+		@Override
+		public CollectionRegion getRegion() {
+			return (CollectionRegion) region;
+		}
+
+	}
+
+	/**
+	 * Access to the natural ids of a region.
+	 */
+	public static class NaturalIdAccess extends CacheAccessStrategy implements NaturalIdRegionAccessStrategy {
+
+		public NaturalIdAccess(CacheRegion.NaturalIdCacheRegion region, AccessType accessType) {
+			super(region, accessType);
+		}
+
+		@Override
+		public Object generateCacheKey(Object[] naturalIdValues, EntityPersister persister,
+				SharedSessionContractImplementor session) {
+			return DefaultCacheKeysFactory.createNaturalIdKey(naturalIdValues, persister, session);
+		}
+
+		@Override
+		public Object[] getNaturalIdValues(Object cacheKey) {
+			return DefaultCacheKeysFactory.getNaturalIdValues(cacheKey);
+		}
+
+		@Override
+		public NaturalIdRegion getRegion() {
+			return (NaturalIdRegion) region;
+		}
+
+		@Override
+		public boolean insert(SharedSessionContractImplementor session, Object key, Object value)
+				throws CacheException {
+			return false;
+		}
+
+		@Override
+		public boolean afterInsert(SharedSessionContractImplementor session, Object key, Object value)
+				throws CacheException {
+			return region.putIfUnlocked(key, value);
+		}
+
+		@Override
+		public boolean update(SharedSessionContractImplementor session, Object key, Object value)
+				throws CacheException {
+			checkWritable();
+			return false;
+		}
+
+		@Override
+		public boolean afterUpdate(SharedSessionContractImplementor session, Object key, Object value, SoftLock lock)
+				throws CacheException {
+			region.unlockItem(key);
+			return false;
+		}
+
+	}
+
+}
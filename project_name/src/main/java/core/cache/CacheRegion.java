@@ -0,0 +1,311 @@
+package core.cache;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.TransactionalDataRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.cache.spi.access.CollectionRegionAccessStrategy;
+import org.hibernate.cache.spi.access.EntityRegionAccessStrategy;
+import org.hibernate.cache.spi.access.NaturalIdRegionAccessStrategy;
+import org.hibernate.cache.spi.access.SoftLock;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+
+/**
+ * A cache region of {@link CacheRegionFactory} backed by a
+ * {@link BoundedCache}. Query results and update timestamps are kept by
+ * plain regions; entities, collections and natural ids by the transactional
+ * subclasses, whose items are locked while a transaction changes them.
+ *
+ * Guarded by a lock rather than a monitor, as {@link BoundedCache}.
+ *
+ * {@link CacheAccessStrategy}
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class CacheRegion implements QueryResultsRegion, TimestampsRegion, TransactionalDataRegion {
+
+	/**
+	 * Lock timeout (60 s) in the unit of
+	 * {@link CacheRegionFactory#nextTimestamp()}.
+	 */
+	public static final int TIMEOUT = 60000 << CacheRegionFactory.TIMESTAMP_SHIFT;
+
+	/**
+	 * A lock of an item being changed by one or more transactions. Once
+	 * released it is kept, so that values read before the release are not
+	 * cached.
+	 */
+	static class Lock implements SoftLock {
+
+		private int count = 0;
+		private long timeout;
+		private long released = Long.MIN_VALUE;
+
+	}
+
+	private final String name;
+	private final CacheRegionFactory factory;
+	private final CacheDataDescription description;
+	private final BoundedCache<Object, Object> cache;
+	private final Map<Object, Lock> locks = new ConcurrentHashMap<Object, Lock>();
+	private final ReentrantLock guard = new ReentrantLock();
+
+	private boolean regionLocked = false;
+	private long regionReleased = Long.MIN_VALUE;
+
+	public CacheRegion(String name, CacheRegionFactory factory, CacheDataDescription description,
+			BoundedCache<Object, Object> cache) {
+		this.name = name;
+		this.factory = factory;
+		this.description = description;
+		this.cache = cache;
+	}
+
+	public BoundedCache<Object, Object> getCache() {
+		return cache;
+	}
+
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
+	public void destroy() throws CacheException {
+		evictAll();
+	}
+
+	@Override
+	public boolean contains(Object key) {
+		return cache.contains(key);
+	}
+
+	@Override
+	public long getSizeInMemory() {
+		return -1;
+	}
+
+	@Override
+	public long getElementCountInMemory() {
+		return cache.getSize();
+	}
+
+	@Override
+	public long getElementCountOnDisk() {
+		return 0;
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public Map toMap() {
+		return cache.toMap();
+	}
+
+	@Override
+	public long nextTimestamp() {
+		return factory.nextTimestamp();
+	}
+
+	@Override
+	public int getTimeout() {
+		return TIMEOUT;
+	}
+
+	@Override
+	public boolean isTransactionAware() {
+		return false;
+	}
+
+	@Override
+	public CacheDataDescription getCacheDataDescription() {
+		return description;
+	}
+
+	@Override
+	public Object get(SharedSessionContractImplementor session, Object key) throws CacheException {
+		return cache.get(key);
+	}
+
+	@Override
+	public void put(SharedSessionContractImplementor session, Object key, Object value) throws CacheException {
+		cache.put(key, value);
+	}
+
+	@Override
+	public void evict(Object key) throws CacheException {
+		cache.remove(key);
+	}
+
+	@Override
+	public void evictAll() throws CacheException {
+		guard.lock();
+		try {
+			cache.clear();
+			locks.clear();
+		} finally {
+			guard.unlock();
+		}
+	}
+
+	/**
+	 * Cache a value read by a transaction unless the item was locked since the
+	 * transaction started or, for minimal puts, is already cached.
+	 */
+	boolean putFromLoad(Object key, Object value, long txTimestamp, boolean minimalPut) {
+		guard.lock();
+		try {
+			if (regionLocked || txTimestamp <= regionReleased)
+				return false;
+			Lock lock = locks.get(key);
+			if (lock != null) {
+				if ((lock.count > 0 && nextTimestamp() < lock.timeout) || txTimestamp <= lock.released)
+					return false;
+				locks.remove(key);
+			}
+			if (minimalPut)
+				return cache.putIfAbsent(key, value);
+			cache.put(key, value);
+			return true;
+		} finally {
+			guard.unlock();
+		}
+	}
+
+	/**
+	 * Cache a value written by a committed transaction unless the item is
+	 * locked or cached.
+	 */
+	boolean putIfUnlocked(Object key, Object value) {
+		guard.lock();
+		try {
+			if (regionLocked || locks.containsKey(key))
+				return false;
+			return cache.putIfAbsent(key, value);
+		} finally {
+			guard.unlock();
+		}
+	}
+
+	SoftLock lockItem(Object key) {
+		guard.lock();
+		try {
+			cache.remove(key);
+			Lock lock = locks.get(key);
+			if (lock == null) {
+				lock = new Lock();
+				locks.put(key, lock);
+			}
+			lock.count++;
+			lock.timeout = nextTimestamp() + TIMEOUT;
+			return lock;
+		} finally {
+			guard.unlock();
+		}
+	}
+
+	void unlockItem(Object key) {
+		guard.lock();
+		try {
+			cache.remove(key);
+			Lock lock = locks.get(key);
+			if (lock == null)
+				return;
+			if (lock.count > 0)
+				lock.count--;
+			lock.released = nextTimestamp();
+			expireLocks(lock.released - TIMEOUT);
+		} finally {
+			guard.unlock();
+		}
+	}
+
+	/**
+	 * Forget the released locks older than a timestamp.
+	 */
+	private void expireLocks(long timestamp) {
+		locks.values().removeIf(lock -> lock.count == 0 && lock.released < timestamp);
+	}
+
+	SoftLock lockRegion() {
+		guard.lock();
+		try {
+			regionLocked = true;
+			cache.clear();
+			return null;
+		} finally {
+			guard.unlock();
+		}
+	}
+
+	void unlockRegion() {
+		guard.lock();
+		try {
+			regionLocked = false;
+			regionReleased = nextTimestamp();
+			cache.clear();
+		} finally {
+			guard.unlock();
+		}
+	}
+
+	/**
+	 * A region of entities.
+	 */
+	public static class EntityCacheRegion extends CacheRegion implements EntityRegion {
+
+		public EntityCacheRegion(String name, CacheRegionFactory factory, CacheDataDescription description,
+				BoundedCache<Object, Object> cache) {
+			super(name, factory, description, cache);
+		}
+
+		@Override
+		public EntityRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+			return new CacheAccessStrategy.EntityAccess(this, accessType);
+		}
+
+	}
+
+	/**
+	 * A region of collections.
+	 */
+	public static class CollectionCacheRegion extends CacheRegion implements CollectionRegion {
+
+		public CollectionCacheRegion(String name, CacheRegionFactory factory, CacheDataDescription description,
+				BoundedCache<Object, Object> cache) {
+			super(name, factory, description, cache);
+		}
+
+		@Override
+		public CollectionRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+			return new CacheAccessStrategy.CollectionAccess(this, accessType);
+		}
+
+	}
+
+	/**
+	 * A region of natural ids.
+	 */
+	public static class NaturalIdCacheRegion extends CacheRegion implements NaturalIdRegion {
+
+		public NaturalIdCacheRegion(String name, CacheRegionFactory factory, CacheDataDescription description,
+				BoundedCache<Object, Object> cache) {
+			super(name, factory, description, cache);
+		}
+
+		@Override
+		public NaturalIdRegionAccessStrategy buildAccessStrategy(AccessType accessType) throws CacheException {
+			return new CacheAccessStrategy.NaturalIdAccess(this, accessType);
+		}
+
+	}
+
+}
@@ -0,0 +1,176 @@
+package core.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.cache.spi.access.AccessType;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+
+/**
+ * An in-process second-level cache: each region is a {@link BoundedCache}
+ * bounded in size and time to live. Entities are cached only when annotated
+ * (@Cacheable and @Cache) or when javax.persistence.sharedCache.mode says
+ * so; query results only for cacheable queries
+ * ({@link core.QueryBuilder#cacheable()}).
+ *
+ * Settings (hibernate.cfg.xml), each region setting being overridable per
+ * region, ie.: hibernate.cache.region.foo.bar.entities.Message.max_size:
+ *
+ * <code>
+ * hibernate.cache.region.factory_class core.cache.CacheRegionFactory
+ * hibernate.cache.use_second_level_cache true
+ * hibernate.cache.use_query_cache true
+ * hibernate.cache.region.max_size (default 10000 entries)
+ * hibernate.cache.region.time_to_live (default 600000 ms, 0 for none)
+ * </code>
+ *
+ * Update timestamps are never evicted, since query results would be taken
+ * as up to date without them.
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class CacheRegionFactory implements RegionFactory {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String PREFIX = "hibernate.cache.region.";
+	public static final String MAX_SIZE = "max_size";
+	public static final String TIME_TO_LIVE = "time_to_live";
+
+	public static final int DEFAULT_MAX_SIZE = 10000;
+	public static final int DEFAULT_TIME_TO_LIVE = 600000;
+
+	public static final int TIMESTAMP_SHIFT = 12;
+
+	private final AtomicLong timestamp = new AtomicLong();
+	private final Map<String, CacheRegion> regions = new ConcurrentHashMap<String, CacheRegion>();
+
+	private SessionFactoryOptions options;
+	private Properties properties;
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public void start(SessionFactoryOptions options, Properties properties) throws CacheException {
+		this.options = options;
+		this.properties = properties;
+	}
+
+	@Override
+	public void stop() {
+		for (CacheRegion region : regions.values())
+			region.destroy();
+		regions.clear();
+	}
+
+	@Override
+	public boolean isMinimalPutsEnabledByDefault() {
+		return false;
+	}
+
+	@Override
+	public AccessType getDefaultAccessType() {
+		return AccessType.READ_WRITE;
+	}
+
+	/**
+	 * A strictly increasing timestamp: the current time in milliseconds
+	 * shifted by {@link CacheRegionFactory#TIMESTAMP_SHIFT} bits, so that
+	 * a transaction started right after an item is released is told apart.
+	 */
+	@Override
+	public long nextTimestamp() {
+		long now = System.currentTimeMillis() << TIMESTAMP_SHIFT;
+		long last;
+		while (true) {
+			last = timestamp.get();
+			long next = Math.max(now, last + 1);
+			if (timestamp.compareAndSet(last, next))
+				return next;
+		}
+	}
+
+	public SessionFactoryOptions getOptions() {
+		return options;
+	}
+
+	/**
+	 * @return The regions by name, to monitor their statistics
+	 */
+	public Map<String, CacheRegion> getRegions() {
+		return Collections.unmodifiableMap(regions);
+	}
+
+	private BoundedCache<Object, Object> createCache(String regionName) {
+		int maxSize = ConfigurationHelper.getInt(PREFIX + regionName + "." + MAX_SIZE, properties,
+				ConfigurationHelper.getInt(PREFIX + MAX_SIZE, properties, DEFAULT_MAX_SIZE));
+		long timeToLive = ConfigurationHelper.getLong(PREFIX + regionName + "." + TIME_TO_LIVE, properties,
+				ConfigurationHelper.getInt(PREFIX + TIME_TO_LIVE, properties, DEFAULT_TIME_TO_LIVE));
+		return new BoundedCache<Object, Object>(maxSize, timeToLive);
+	}
+
+	/**
+	 * Register a region, or return the one of the same name if Hibernate
+	 * builds it again, ie.: the default query results region.
+	 */
+	@SuppressWarnings("unchecked")
+	private <R extends CacheRegion> R register(String regionName, Class<R> type, Supplier<R> region)
+			throws CacheException {
+		CacheRegion registered = regions.computeIfAbsent(regionName, name -> region.get());
+		if (!type.isInstance(registered))
+			throw new CacheException("Cache region " + regionName + " already exists as a "
+					+ registered.getClass().getSimpleName());
+		return (R) registered;
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public EntityRegion buildEntityRegion(String regionName, Properties properties, CacheDataDescription metadata)
+			throws CacheException {
+		return register(regionName, CacheRegion.EntityCacheRegion.class,
+				() -> new CacheRegion.EntityCacheRegion(regionName, this, metadata, createCache(regionName)));
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public NaturalIdRegion buildNaturalIdRegion(String regionName, Properties properties,
+			CacheDataDescription metadata) throws CacheException {
+		return register(regionName, CacheRegion.NaturalIdCacheRegion.class,
+				() -> new CacheRegion.NaturalIdCacheRegion(regionName, this, metadata, createCache(regionName)));
+	}
+
+	@Override
+	public CollectionRegion buildCollectionRegion(String regionName, Properties properties,
+			CacheDataDescription metadata) throws CacheException {
+		return register(regionName, CacheRegion.CollectionCacheRegion.class,
+				() -> new CacheRegion.CollectionCacheRegion(regionName, this, metadata, createCache(regionName)));
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public QueryResultsRegion buildQueryResultsRegion(String regionName, Properties properties)
+			throws CacheException {
+		return register(regionName, CacheRegion.class,
+				() -> new CacheRegion(regionName, this, null, createCache(regionName)));
+	}
+
+	@SuppressWarnings("deprecation")
+	@Override
+	public TimestampsRegion buildTimestampsRegion(String regionName, Properties properties) throws CacheException {
+		return register(regionName, CacheRegion.class,
+				() -> new CacheRegion(regionName, this, null, new BoundedCache<Object, Object>(Integer.MAX_VALUE, 0)));
+	}
+
+}
@@ -5,23 +5,32 @@ import java.io.Serializable;
 import java.util.Collections;
 import java.util.List;
 
+import javax.persistence.PersistenceException;
 import javax.servlet.ServletException;
+import javax.servlet.annotation.WebInitParam;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import core.Idempotent;
+import core.Page;
 import core.RepositoryController;
 import foo.bar.entities.Message;
+import foo.bar.entities.MessageSummary;
 import foo.bar.repositories.MessageRepository;
 
 /**
  * Servlet implementation class Message
  */
-@WebServlet("/message")
+@WebServlet(urlPatterns = "/message", asyncSupported = true, initParams = {
+		@WebInitParam(name = "async", value = "true"), @WebInitParam(name = "async.threads", value = "8"),
+		@WebInitParam(name = "async.queue_size", value = "32"), @WebInitParam(name = "async.timeout", value = "10000") })
 public class MessageController extends RepositoryController<MessageRepository>implements Serializable {
 
 	private static final long serialVersionUID = 1L;
 
+	private static final int PAGE_SIZE = 20;
+
 	protected void doGet(HttpServletRequest request, HttpServletResponse response)
 			throws ServletException, IOException {
 		get(request, response);
@@ -42,6 +51,18 @@ public class MessageController extends RepositoryController<MessageRepository>im
 		}
 	}
 
+	/**
+	 * Posted messages are saved by the group commit writer, if enabled, so the
+	 * request itself only reads: it must not hold the writer connection while
+	 * waiting for the writer.
+	 */
+	@Override
+	protected boolean isReadOnly(HttpServletRequest request) {
+		if ("POST".equals(request.getMethod()) && "post".equals(getActionName(request)))
+			return getGroupCommitWriter(request) != null;
+		return super.isReadOnly(request);
+	}
+
 	public void get(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		if (request.getParameter("id") != null)
 			detail(request, response);
@@ -51,20 +72,29 @@ public class MessageController extends RepositoryController<MessageRepository>im
 
 	public void detail(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		Long id = Long.parseLong(request.getParameter("id"));
-		Message message = getRespository().find(id);
+		Message message = getRespository(request).find(id);
 		request.setAttribute("message", message);
 	}
 
+	/**
+	 * List a page of messages, the first one if the cursor is malformed.
+	 */
 	public void all(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-		List<Message> messages = getRespository().findAll();
-		Collections.reverse(messages);
-		request.setAttribute("messages", messages);
+		Page<MessageSummary> page;
+		try {
+			page = getRespository(request).pageSummaries(request.getParameter("cursor"), PAGE_SIZE, "DESC");
+		} catch (PersistenceException e) {
+			request.setAttribute("warning", e.getMessage());
+			page = getRespository(request).pageSummaries(null, PAGE_SIZE, "DESC");
+		}
+		request.setAttribute("messages", page.getItems());
+		request.setAttribute("cursor", page.getCursor());
 	}
 
 	public void filter(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		String content = "Hello";
 		String id = "1";
-		List<Message> messages = getRespository().filterByContentAndId(content, id);
+		List<Message> messages = getRespository(request).filterByContentAndId(content, id);
 		Collections.reverse(messages);
 		request.setAttribute("messages", messages);
 	}
@@ -72,20 +102,23 @@ public class MessageController extends RepositoryController<MessageRepository>im
 	public void post(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		String message = request.getParameter("message");
 		Message hello = new Message(message);
-		getRespository().save(hello);
+		MessageRepository repository = getRespository(request);
+		try {
+			repository.await(repository.saveAsync(hello));
+		} catch (PersistenceException e) {
+			throw new ServletException(e);
+		}
 		all(request, response);
 		request.setAttribute("success", "Message was successfully created.");
 	}
 
+	@Idempotent
 	public void delete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
 		Long id = Long.parseLong(request.getParameter("id"));
-		Message message = getRespository().find(id);
-		if (message == null) {
-			request.setAttribute("warning", "Message does not exist.");
-		} else {
-			getRespository().remove(message);
+		if (getRespository(request).deleteById(id))
 			request.setAttribute("success", "Message was successfully deleted.");
-		}
+		else
+			request.setAttribute("warning", "Message does not exist.");
 		all(request, response);
 	}
 
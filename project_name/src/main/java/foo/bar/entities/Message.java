@@ -1,13 +1,23 @@
 package foo.bar.entities;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import core.EntityModel;
 
 /**
- * An entity model for messages.
+ * An entity model for messages, indexed by creation date for day range
+ * filters and kept in the second-level cache.
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = @Index(name = "message_date_created", columnList = "dateCreated"))
 public class Message extends EntityModel {
 
 	private String content;
@@ -0,0 +1,39 @@
+package foo.bar.entities;
+
+import java.util.Date;
+
+/**
+ * A read-only projection of a {@link Message} for list views, built by a
+ * constructor expression instead of loading the entity.
+ *
+ * {@link core.QueryBuilder#as(Class)}
+ */
+public class MessageSummary {
+
+	private Long id;
+	private String content;
+	private Date dateCreated;
+
+	public MessageSummary(Long id, String content, Date dateCreated) {
+		this.id = id;
+		this.content = content;
+		this.dateCreated = dateCreated;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public String getContent() {
+		return content;
+	}
+
+	public Date getDateCreated() {
+		return dateCreated;
+	}
+
+	public String toString() {
+		return getContent();
+	}
+
+}
@@ -5,7 +5,9 @@ import java.util.List;
 import org.hibernate.Session;
 
 import core.GenericRepository;
+import core.Page;
 import foo.bar.entities.Message;
+import foo.bar.entities.MessageSummary;
 
 /**
  * Repository for messages.
@@ -19,8 +21,20 @@ public class MessageRepository extends GenericRepository<Message> {
 		super(session);
 	}
 
+	/**
+	 * Return a page of message summaries by keyset pagination on id.
+	 *
+	 * {@link GenericRepository#page(String, int, String)}
+	 */
+	public Page<MessageSummary> pageSummaries(String cursor, int limit, String direction) {
+		Page.checkLimit(limit);
+		List<MessageSummary> rows = createQueryBuilder().select("id", "content", "dateCreated")
+				.page(Page.decode(cursor, direction), limit + 1, direction).as(MessageSummary.class).getResultList();
+		return Page.of(rows, limit, direction, MessageSummary::getId);
+	}
+
 	public List<Message> filterByContentAndId(String content, String id) {
-		return this.createQueryBuilder().like("content", content).like("id", id).build().getResultList();
+		return this.createQueryBuilder().like("content", content).eq("id", Long.valueOf(id)).build().getResultList();
 	}
 
 }
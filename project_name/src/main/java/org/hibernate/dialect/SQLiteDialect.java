@@ -296,7 +296,7 @@ public class SQLiteDialect extends Dialect {
 
 	@Override
 	public boolean doesReadCommittedCauseWritersToBlockReaders() {
-		// TODO Validate (WAL mode...)
+		// Rollback journal mode, see SQLiteWALDialect
 		return true;
 	}
 
@@ -0,0 +1,22 @@
+package org.hibernate.dialect;
+
+/**
+ * An SQL dialect for SQLite 3 databases in write-ahead logging mode
+ * (journal_mode=WAL), where readers do not block the writer and the writer
+ * does not block readers.
+ *
+ * {@link https://www.sqlite.org/wal.html}
+ */
+public class SQLiteWALDialect extends SQLiteDialect {
+
+	@Override
+	public boolean doesReadCommittedCauseWritersToBlockReaders() {
+		return false;
+	}
+
+	@Override
+	public boolean doesRepeatableReadCauseReadersToBlockWriters() {
+		return false;
+	}
+
+}
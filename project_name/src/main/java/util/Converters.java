@@ -0,0 +1,236 @@
+package util;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Modifier;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A registry of converters from String values to other types, ie.: request
+ * parameters to the type of an entity property. The converter of a type is
+ * resolved once and cached:
+ *
+ * <ul>
+ * <li>String, Character, Boolean ("true" or "false", ignoring case), the
+ * numbers and Date (by {@link DateUtil#stringToDate(String)}) have built in
+ * converters, primitive types use the converter of their wrapper.</li>
+ * <li>Enums are converted by constant name.</li>
+ * <li>Other types by a public static parseX(String), parse(String),
+ * valueOf(String) or fromString(String) method, or else a public String
+ * constructor, invoked through a method handle.</li>
+ * </ul>
+ *
+ * Example:
+ *
+ * <code>
+ * Converters.get(Integer.class).convert("10");
+ * Converters.convert(Long.class, new String[] { "1", "2" });
+ * </code>
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class Converters {
+
+	/**
+	 * Converts a non empty String value to a type.
+	 */
+	@FunctionalInterface
+	public interface Converter<T> {
+
+		T convert(String value) throws ParseException;
+
+	}
+
+	private static final Map<Class<?>, Converter<?>> BUILT_IN = new HashMap<Class<?>, Converter<?>>();
+
+	static {
+		BUILT_IN.put(String.class, value -> value);
+		BUILT_IN.put(Character.class, value -> {
+			if (value.length() > 1)
+				throw new ParseException("The length of value is greater than 1.", value.length() - 1);
+			return value.charAt(0);
+		});
+		BUILT_IN.put(Boolean.class, Converters::parseBoolean);
+		BUILT_IN.put(Byte.class, Byte::valueOf);
+		BUILT_IN.put(Short.class, Short::valueOf);
+		BUILT_IN.put(Integer.class, Integer::valueOf);
+		BUILT_IN.put(Long.class, Long::valueOf);
+		BUILT_IN.put(Float.class, Float::valueOf);
+		BUILT_IN.put(Double.class, Double::valueOf);
+		BUILT_IN.put(Date.class, DateUtil::stringToDate);
+		BUILT_IN.put(Object.class, value -> value);
+	}
+
+	private static final Map<Class<?>, Class<?>> WRAPPERS = new HashMap<Class<?>, Class<?>>();
+
+	static {
+		WRAPPERS.put(boolean.class, Boolean.class);
+		WRAPPERS.put(char.class, Character.class);
+		WRAPPERS.put(byte.class, Byte.class);
+		WRAPPERS.put(short.class, Short.class);
+		WRAPPERS.put(int.class, Integer.class);
+		WRAPPERS.put(long.class, Long.class);
+		WRAPPERS.put(float.class, Float.class);
+		WRAPPERS.put(double.class, Double.class);
+	}
+
+	private static final String[] FACTORY_METHODS = { "parse", "valueOf", "fromString" };
+
+	private static final MethodType CONVERTER_TYPE = MethodType.methodType(Object.class, String.class);
+
+	private static final ClassValue<Converter<?>> CONVERTERS = new ClassValue<Converter<?>>() {
+
+		@Override
+		protected Converter<?> computeValue(Class<?> type) {
+			return resolve(type);
+		}
+
+	};
+
+	private Converters() {
+	}
+
+	private static Boolean parseBoolean(String value) throws ParseException {
+		if ("true".equalsIgnoreCase(value))
+			return Boolean.TRUE;
+		if ("false".equalsIgnoreCase(value))
+			return Boolean.FALSE;
+		throw new ParseException("Could not convert " + value + " to " + Boolean.class.getName(), -1);
+	}
+
+	/**
+	 * Return the converter of a type.
+	 *
+	 * @param type
+	 *            The type
+	 * @return The cached converter
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Converter<T> get(Class<T> type) {
+		return (Converter<T>) CONVERTERS.get(type);
+	}
+
+	/**
+	 * Convert a value, or each value of an array, to a type. Values already of
+	 * the type are not converted, others are converted from their String
+	 * representation.
+	 *
+	 * @param type
+	 *            The type
+	 * @param value
+	 *            The value to be converted
+	 * @return The converted value or an Object array of converted values
+	 * @throws ParseException
+	 *             If the value is null, empty or can not be converted
+	 */
+	public static Object convert(Class<?> type, Object value) throws ParseException {
+		return convert(type, get(type), value);
+	}
+
+	/**
+	 * Convert a value through a converter already resolved for the type.
+	 *
+	 * {@link Converters#convert(Class, Object)}
+	 */
+	public static Object convert(Class<?> type, Converter<?> converter, Object value) throws ParseException {
+		if (value == null)
+			throw new ParseException("Value is null", -1);
+		if (value instanceof Object[]) {
+			Object[] values = (Object[]) value;
+			Object[] converted = new Object[values.length];
+			for (int i = 0; i < values.length; i++)
+				converted[i] = convert(type, converter, values[i]);
+			return converted;
+		}
+		if ((type.isPrimitive() ? WRAPPERS.get(type) : type).isInstance(value))
+			return value;
+
+		String string = value.toString();
+		if (string.isEmpty())
+			throw new ParseException("Value is null", -1);
+		try {
+			return converter.convert(string);
+		} catch (IllegalArgumentException e) {
+			throw new ParseException("Could not convert " + string + " to " + type.getName() + ": " + e.getMessage(),
+					-1);
+		}
+	}
+
+	private static Converter<?> resolve(Class<?> type) {
+		Class<?> wrapper = WRAPPERS.get(type);
+		if (wrapper != null)
+			return CONVERTERS.get(wrapper);
+
+		Converter<?> converter = BUILT_IN.get(type);
+		if (converter != null)
+			return converter;
+
+		if (type.isEnum())
+			return enumConverter(type);
+
+		MethodHandle handle = findFactory(type);
+		if (handle != null)
+			return methodHandleConverter(handle.asType(CONVERTER_TYPE));
+
+		if (type.isAssignableFrom(String.class))
+			return value -> value;
+
+		return value -> {
+			throw new ParseException("Parse not supported for type " + type.getName(), -1);
+		};
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static Converter<?> enumConverter(Class type) {
+		return value -> Enum.valueOf(type, value);
+	}
+
+	private static Converter<?> methodHandleConverter(MethodHandle handle) {
+		return value -> {
+			try {
+				return (Object) handle.invokeExact(value);
+			} catch (ParseException | RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new ParseException(e.getMessage(), -1);
+			}
+		};
+	}
+
+	/**
+	 * Find a public static factory method or constructor of a type receiving
+	 * a String.
+	 *
+	 * @return The method handle or null if the type has none
+	 */
+	private static MethodHandle findFactory(Class<?> type) {
+		if (!Modifier.isPublic(type.getModifiers()))
+			return null;
+
+		MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+		MethodType factoryType = MethodType.methodType(type, String.class);
+
+		try {
+			return lookup.findStatic(type, "parse" + type.getSimpleName(), factoryType);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+		}
+		for (String name : FACTORY_METHODS) {
+			try {
+				return lookup.findStatic(type, name, factoryType);
+			} catch (NoSuchMethodException | IllegalAccessException e) {
+			}
+		}
+		if (Modifier.isAbstract(type.getModifiers()))
+			return null;
+		try {
+			return lookup.findConstructor(type, MethodType.methodType(void.class, String.class));
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			return null;
+		}
+	}
+
+}
@@ -2,17 +2,35 @@ package util;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.time.temporal.TemporalQueries;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import java.sql.Timestamp;
 
 /**
  * 
- * TODO Verificar possibilidade de uso do JodaTime
+ * Dates are parsed and formatted by immutable {@link DateTimeFormatter}s
+ * cached by pattern, in the default time zone. Patterns follow
+ * {@link DateTimeFormatter} (ie.: dd/MM/yyyy, yyyy-MM-dd HH:mm:ss) and are
+ * parsed strictly, as a non lenient {@link SimpleDateFormat}.
  * 
  * {@link http://javafree.uol.com.br/topic-10264-Somar-10-dias-a-uma-data.html}
  * 
@@ -20,9 +38,63 @@ import java.sql.Timestamp;
  */
 public class DateUtil {
 
+	private static final Map<String, DateTimeFormatter> FORMATTERS = new ConcurrentHashMap<String, DateTimeFormatter>();
+
+	private static final LocalDate EPOCH = LocalDate.of(1970, 1, 1);
+
 	private DateUtil() {
 	}
 
+	/**
+	 * Return the cached formatter of a pattern. Years of era (yyyy) default to
+	 * the current era, so that strict parsing resolves them.
+	 * 
+	 * @param pattern
+	 *            The date pattern
+	 * @return The formatter
+	 */
+	public static DateTimeFormatter getFormatter(String pattern) {
+		DateTimeFormatter formatter = FORMATTERS.get(pattern);
+		if (formatter == null) {
+			formatter = new DateTimeFormatterBuilder().appendPattern(pattern).parseDefaulting(ChronoField.ERA, 1)
+					.toFormatter().withResolverStyle(ResolverStyle.STRICT);
+			FORMATTERS.putIfAbsent(pattern, formatter);
+		}
+		return formatter;
+	}
+
+	private static ZonedDateTime toZonedDateTime(Date date) {
+		// java.sql.Date does not support toInstant()
+		return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault());
+	}
+
+	private static LocalDate toLocalDate(Date date) {
+		return toZonedDateTime(date).toLocalDate();
+	}
+
+	private static String format(Date date, String pattern) {
+		return getFormatter(pattern).format(toZonedDateTime(date));
+	}
+
+	/**
+	 * Parse a date with a cached formatter. Missing time fields are midnight,
+	 * a missing date is 01/01/1970 and a missing zone is the default one.
+	 */
+	private static long parse(String strdate, String pattern) throws ParseException {
+		try {
+			TemporalAccessor parsed = getFormatter(pattern).parse(strdate);
+			LocalDate date = parsed.query(TemporalQueries.localDate());
+			LocalTime time = parsed.query(TemporalQueries.localTime());
+			ZoneId zone = parsed.query(TemporalQueries.zone());
+			return ZonedDateTime.of(date == null ? EPOCH : date, time == null ? LocalTime.MIDNIGHT : time,
+					zone == null ? ZoneId.systemDefault() : zone).toInstant().toEpochMilli();
+		} catch (DateTimeParseException e) {
+			throw new ParseException(e.getMessage(), e.getErrorIndex());
+		} catch (DateTimeException e) {
+			throw new ParseException(e.getMessage(), 0);
+		}
+	}
+
 	/**
 	 * Retorna o valor do horário minimo para a data de referencia passada. <BR>
 	 * <BR>
@@ -34,13 +106,7 @@ public class DateUtil {
 	 * @return {@link Date} que representa o horário minimo para dia informado.
 	 */
 	public static Date lowDateTime(Date date) {
-		Calendar aux = Calendar.getInstance();
-		aux.setTime(date);
-		aux.set(Calendar.HOUR_OF_DAY, 0);
-		aux.set(Calendar.MINUTE, 0);
-		aux.set(Calendar.SECOND, 0);
-		aux.set(Calendar.MILLISECOND, 0);
-		return aux.getTime();
+		return new Date(DayBoundaries.systemDefault().startOfDay(date.getTime()));
 	}
 
 	/**
@@ -54,13 +120,19 @@ public class DateUtil {
 	 * @return {@link Date} que representa o horário maximo para dia informado.
 	 */
 	public static Date highDateTime(Date date) {
-		Calendar aux = Calendar.getInstance();
-		aux.setTime(date);
-		aux.set(Calendar.HOUR_OF_DAY, 23);
-		aux.set(Calendar.MINUTE, 59);
-		aux.set(Calendar.SECOND, 59);
-		aux.set(Calendar.MILLISECOND, 999);
-		return aux.getTime();
+		return new Date(DayBoundaries.systemDefault().endOfDay(date.getTime()));
+	}
+
+	/**
+	 * Retorna o inicio do dia seguinte a data de referencia passada, ou seja, o
+	 * fim exclusivo do dia: [lowDateTime(date), nextDayStart(date)).
+	 * 
+	 * @param date
+	 *            de referencia.
+	 * @return {@link Date} que representa o inicio do dia seguinte.
+	 */
+	public static Date nextDayStart(Date date) {
+		return new Date(DayBoundaries.systemDefault().nextDayStart(date.getTime()));
 	}
 
 	/**
@@ -71,8 +143,7 @@ public class DateUtil {
 	 * @return
 	 */
 	public static long getDateDifference(Date date1, Date date2) {
-		long DAY = 24L * 60L * 60L * 1000L;
-		return ((DateUtil.lowDateTime(date1).getTime() - DateUtil.lowDateTime(date2).getTime()) / DAY * -1);
+		return DayBoundaries.systemDefault().daysBetween(date1.getTime(), date2.getTime());
 	}
 
 	/**
@@ -86,7 +157,7 @@ public class DateUtil {
 	 * @return
 	 */
 	public static int getCurrentYear() {
-		return Integer.parseInt(DateUtil.dateToString(date, "yyyy"));
+		return LocalDate.now().getYear();
 	}
 
 	/**
@@ -95,7 +166,7 @@ public class DateUtil {
 	 * @return
 	 */
 	public static int getCurrentMonth() {
-		return Integer.parseInt(DateUtil.dateToString(date, "mm"));
+		return LocalDate.now().getMonthValue();
 	}
 
 	/**
@@ -144,7 +215,7 @@ public class DateUtil {
 	 * @return
 	 */
 	public static int getDay(Date date) {
-		return Integer.parseInt(DateUtil.dateToString(date, "dd"));
+		return toLocalDate(date).getDayOfMonth();
 	}
 
 	/**
@@ -155,7 +226,7 @@ public class DateUtil {
 	 * @return
 	 */
 	public static int month(Date date) {
-		return Integer.parseInt(DateUtil.dateToString(date, "MM"));
+		return toLocalDate(date).getMonthValue();
 	}
 
 	/**
@@ -166,7 +237,7 @@ public class DateUtil {
 	 * @return
 	 */
 	public static int year(Date date) {
-		return Integer.parseInt(DateUtil.dateToString(date, "yyyy"));
+		return toLocalDate(date).getYear();
 	}
 
 	/**
@@ -243,8 +314,7 @@ public class DateUtil {
 	 * @return
 	 */
 	public static java.util.Date stringToDate(String strdate, String format) throws ParseException {
-		SimpleDateFormat df = new SimpleDateFormat(format);
-		return stringToDate(strdate, df);
+		return new Date(parse(strdate, format));
 	}
 
 	/**
@@ -260,8 +330,7 @@ public class DateUtil {
 	}
 
 	public static String dateToString(Date date, String format) {
-		SimpleDateFormat df = new SimpleDateFormat(format);
-		return df.format(date);
+		return format(date, format);
 	}
 
 	/**
@@ -274,8 +343,7 @@ public class DateUtil {
 	 * @return
 	 */
 	public static String dateToString(java.sql.Date date, String format) {
-		SimpleDateFormat df = new SimpleDateFormat(format);
-		return df.format(date);
+		return format(date, format);
 	}
 
 	/**
@@ -307,19 +375,12 @@ public class DateUtil {
 	 * @return
 	 */
 	public static String TimeStampToString(Timestamp dtTime) {
-		String data;
-		data = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(dtTime);
-
-		return data;
+		return format(dtTime, "yyyy-MM-dd HH:mm:ss");
 
 	}
 
 	public static String TimeStampToString2(Timestamp dtTime) {
-		String data;
-
-		data = new SimpleDateFormat("dd/MM/yyyy").format(dtTime);
-
-		return data;
+		return format(dtTime, "dd/MM/yyyy");
 	}
 
 	/**
@@ -333,9 +394,7 @@ public class DateUtil {
 	 * @throws ParseException
 	 */
 	public static java.sql.Date strToSqlDate(String strdate, String format) throws ParseException {
-		SimpleDateFormat df = new SimpleDateFormat(format);
-		java.sql.Date date = new java.sql.Date(df.parse(strdate).getTime());
-		return date;
+		return new java.sql.Date(parse(strdate, format));
 	}
 
 	/**
@@ -0,0 +1,139 @@
+package util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.zone.ZoneRules;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Computes the boundaries of the days of a time zone in epoch milliseconds.
+ * The rules of a zone are resolved once; a boundary is plain long arithmetic
+ * on the offset of the instant, falling back to {@link LocalDate#atStartOfDay(ZoneId)}
+ * only when a transition (ie.: daylight saving time starting at midnight)
+ * changes the offset around the start of the day.
+ *
+ * Days are half-open ranges: [startOfDay, nextDayStart).
+ *
+ * Example:
+ *
+ * <code>
+ * DayBoundaries days = DayBoundaries.systemDefault();
+ * long start = days.startOfDay(date.getTime());
+ * long end = days.nextDayStart(date.getTime()); // exclusive
+ * </code>
+ *
+ * @author Fernando Felix do Nascimento Junior
+ */
+public class DayBoundaries {
+
+	public static final long DAY = 24L * 60L * 60L * 1000L;
+
+	/**
+	 * Days last from 23 to 25 hours, so this lands within the next day.
+	 */
+	private static final long NEXT_DAY = DAY + 3L * 60L * 60L * 1000L;
+
+	private static final Map<ZoneId, DayBoundaries> BOUNDARIES = new ConcurrentHashMap<ZoneId, DayBoundaries>();
+
+	private final ZoneId zone;
+	private final ZoneRules rules;
+	private final boolean fixedOffset;
+	private final long fixedOffsetMillis;
+
+	private DayBoundaries(ZoneId zone) {
+		this.zone = zone;
+		this.rules = zone.getRules();
+		this.fixedOffset = rules.isFixedOffset();
+		this.fixedOffsetMillis = fixedOffset ? rules.getOffset(Instant.EPOCH).getTotalSeconds() * 1000L : 0;
+	}
+
+	public static DayBoundaries of(ZoneId zone) {
+		DayBoundaries boundaries = BOUNDARIES.get(zone);
+		if (boundaries == null)
+			boundaries = BOUNDARIES.computeIfAbsent(zone, DayBoundaries::new);
+		return boundaries;
+	}
+
+	/**
+	 * @return The day boundaries of the default time zone
+	 */
+	public static DayBoundaries systemDefault() {
+		return of(ZoneId.systemDefault());
+	}
+
+	public ZoneId getZone() {
+		return zone;
+	}
+
+	private long offset(long epochMilli) {
+		if (fixedOffset)
+			return fixedOffsetMillis;
+		return rules.getOffset(Instant.ofEpochMilli(epochMilli)).getTotalSeconds() * 1000L;
+	}
+
+	/**
+	 * The local day of an instant.
+	 *
+	 * @param epochMilli
+	 *            The instant
+	 * @return The number of days since 01/01/1970 in this zone
+	 */
+	public long epochDay(long epochMilli) {
+		return Math.floorDiv(epochMilli + offset(epochMilli), DAY);
+	}
+
+	/**
+	 * The first instant of the day of an instant.
+	 *
+	 * @param epochMilli
+	 *            The instant
+	 * @return The start of the day in epoch milliseconds
+	 */
+	public long startOfDay(long epochMilli) {
+		long offset = offset(epochMilli);
+		long epochDay = Math.floorDiv(epochMilli + offset, DAY);
+		long start = epochDay * DAY - offset;
+		if (fixedOffset || (offset(start) == offset && offset(start - 1) == offset))
+			return start;
+		return LocalDate.ofEpochDay(epochDay).atStartOfDay(zone).toInstant().toEpochMilli();
+	}
+
+	/**
+	 * The first instant of the day after the day of an instant, ie.: the
+	 * exclusive end of the day.
+	 *
+	 * @param epochMilli
+	 *            The instant
+	 * @return The start of the next day in epoch milliseconds
+	 */
+	public long nextDayStart(long epochMilli) {
+		return startOfDay(startOfDay(epochMilli) + NEXT_DAY);
+	}
+
+	/**
+	 * The last millisecond of the day of an instant.
+	 *
+	 * @param epochMilli
+	 *            The instant
+	 * @return The end of the day in epoch milliseconds
+	 */
+	public long endOfDay(long epochMilli) {
+		return nextDayStart(epochMilli) - 1;
+	}
+
+	/**
+	 * The number of local days from an instant to another.
+	 *
+	 * @param fromEpochMilli
+	 *            The first instant
+	 * @param toEpochMilli
+	 *            The second instant
+	 * @return The number of days, negative if the second is before the first
+	 */
+	public long daysBetween(long fromEpochMilli, long toEpochMilli) {
+		return epochDay(toEpochMilli) - epochDay(fromEpochMilli);
+	}
+
+}
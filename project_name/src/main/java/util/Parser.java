@@ -166,7 +166,9 @@ public class Parser {
 	}
 
 	public Boolean getBooleanOrNull() throws ParseException {
-		return getBooleanOrNull(true);
+		if (isNull())
+			return null;
+		return Converters.get(Boolean.class).convert(value);
 	}
 
 	public Boolean getBoolean(Object reference) throws ParseException {
@@ -285,48 +287,23 @@ public class Parser {
 		}
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Convert the value by the cached converter of a type.
+	 * 
+	 * {@link Converters}
+	 */
 	public <T> T getObjectOrNull(Class<T> type) throws ParseException {
-		if (isNull()) {
+		if (isNull())
 			return null;
-		} else if (value.getClass().equals(type)) {
-			return (T) value;
-		} else if (value.equals(type)) {
-			return (T) value;
-		} else if (type.equals(Boolean.class)) {
-			return (T) getBoolean();
-		} else if (type.equals(Byte.class)) {
-			return (T) getByte();
-		} else if (type.equals(Short.class)) {
-			return (T) getShort();
-		} else if (type.equals(Integer.class)) {
-			return (T) getInteger();
-		} else if (type.equals(Long.class)) {
-			return (T) getLong();
-		} else if (type.equals(Float.class)) {
-			return (T) getFloat();
-		} else if (type.equals(Double.class)) {
-			return (T) getDouble();
-		} else if (type.equals(Character.class)) {
-			return (T) getCharacter();
-		} else if (type.equals(String.class)) {
-			return (T) getString();
-		} else if (type.equals(Date.class)) {
-			return (T) getDate();
-		} else {
-			try {
-				return (T) cast(type);
-			} catch (ParseException e) {
-				throw new ParseException("Parse not supported for type " + type.getName(), -1);
-			}
-		}
-
+		return Converters.get(type).convert(value);
 	}
 
 	/**
 	 * TODO revisar <br>
 	 * Corverte um determinado objeto para outro tipo conforme a classe passada
-	 * como parametro
+	 * como parametro, pelo conversor da classe em cache
+	 * 
+	 * {@link Converters#convert(Class, Object)}
 	 * 
 	 * @param c
 	 *            A classe base
@@ -336,13 +313,7 @@ public class Parser {
 	 * @throws ParseException
 	 */
 	public static Object parseValue(Class<?> type, Object value) throws ParseException {
-		if (value.getClass().isArray()) {
-			ArrayList<Object> rra = new ArrayList<Object>();
-			for (Object object : (Object[]) value)
-				rra.add(parseValue(type, object));
-			return rra.toArray();
-		}
-		return new Parser(value.toString()).getObject(type);
+		return Converters.convert(type, value);
 	}
 
 	/**
@@ -112,6 +112,13 @@
 					</table>
 				</div>
 
+				<c:if test="${not empty cursor}">
+					<ul class="pager">
+						<li class="next"><a href="message?cursor=${cursor}">Older
+								messages &rarr;</a></li>
+					</ul>
+				</c:if>
+
 			</c:if>
 			<c:if test="${not empty message}">
 				<div>${message}</div>
@@ -0,0 +1,261 @@
+package core;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.logging.Logger;
+
+import junit.framework.TestCase;
+
+public class TestConnectionPool extends TestCase {
+
+	private static final Logger LOG = Logger.getLogger(TestConnectionPool.class);
+
+	private String database = "test_connection_pool.db";
+	private ConnectionPool pool = null;
+
+	protected void setUp() throws SQLException {
+		pool = new ConnectionPool("test", () -> DriverManager.getConnection("jdbc:sqlite:" + database), 1, 2, 100,
+				50, 1, 0);
+	}
+
+	/**
+	 * A connection counting its validations.
+	 */
+	private Connection counting(Connection connection, AtomicInteger validations) {
+		return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { Connection.class },
+				(proxy, method, args) -> {
+					if (method.getName().equals("isValid"))
+						validations.incrementAndGet();
+					return method.invoke(connection, args);
+				});
+	}
+
+	public void testBounded() throws SQLException {
+		assertEquals(1, pool.getIdleCount());
+		Connection first = pool.borrow();
+		Connection second = pool.borrow();
+		assertEquals(2, pool.getActiveCount());
+		assertEquals(2, pool.getSize());
+
+		try {
+			pool.borrow();
+			fail("The pool must not lend more than max size connections");
+		} catch (SQLException e) {
+			assertEquals(1, pool.getTimeoutCount());
+		}
+
+		pool.giveBack(first);
+		assertSame(first, pool.borrow());
+		pool.giveBack(first);
+		pool.giveBack(second);
+		assertEquals(0, pool.getActiveCount());
+		assertEquals(2, pool.getIdleCount());
+	}
+
+	public void testInvalidConnection() throws SQLException {
+		Connection connection = pool.borrow();
+		pool.giveBack(connection);
+		connection.close();
+
+		assertNotSame(connection, pool.borrow());
+		assertEquals(1, pool.getInvalidCount());
+	}
+
+	public void testValidationIdleThreshold() throws SQLException, InterruptedException {
+		AtomicInteger validations = new AtomicInteger();
+		ConnectionPool recent = new ConnectionPool("recent",
+				() -> counting(DriverManager.getConnection("jdbc:sqlite:" + database), validations), 1, 1, 100, 0, 1,
+				50);
+		try {
+			recent.giveBack(recent.borrow());
+			recent.giveBack(recent.borrow());
+			assertEquals(0, validations.get());
+
+			Thread.sleep(100);
+			recent.giveBack(recent.borrow());
+			assertEquals(1, validations.get());
+		} finally {
+			recent.close();
+		}
+	}
+
+	public void testLeakDetection() throws SQLException, InterruptedException {
+		pool.borrow();
+		// reported by the periodic check, without borrowing again
+		for (int i = 0; i < 50 && pool.getLeakCount() == 0; i++)
+			Thread.sleep(10);
+		assertEquals(1, pool.getLeakCount());
+		pool.detectLeaks();
+		assertEquals(1, pool.getLeakCount());
+	}
+
+	public void testPragmaProfile() throws SQLException {
+		Map<String, String> settings = new HashMap<String, String>();
+		settings.put(SQLitePragmaProfile.PROFILE, "wal");
+		settings.put("hibernate.sqlite.busy_timeout", "1000");
+		SQLitePragmaProfile profile = SQLitePragmaProfile.create(settings);
+		assertTrue(profile.isWriteAheadLogging());
+		assertEquals("1000", profile.getPragmas().get("busy_timeout"));
+
+		Connection connection = pool.borrow();
+		profile.apply(connection);
+		try (Statement statement = connection.createStatement();
+				ResultSet result = statement.executeQuery("PRAGMA journal_mode")) {
+			assertTrue(result.next());
+			assertEquals("wal", result.getString(1));
+		}
+		pool.giveBack(connection);
+	}
+
+	/**
+	 * Open a connection to the database of a profile, failing at once on
+	 * SQLITE_BUSY.
+	 */
+	private Connection connect(String profile) throws SQLException {
+		Map<String, String> settings = new HashMap<String, String>();
+		settings.put(SQLitePragmaProfile.PROFILE, profile);
+		settings.put(SQLitePragmaProfile.PREFIX + "busy_timeout", "0");
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + profile + "_" + database);
+		SQLitePragmaProfile.create(settings).apply(connection);
+		return connection;
+	}
+
+	private boolean isBusy(SQLException e) {
+		return (e.getErrorCode() & 0xff) == 5;
+	}
+
+	/**
+	 * Run readers against one writer committing a row per transaction.
+	 *
+	 * @return The reads, writes and reads failed on SQLITE_BUSY
+	 */
+	private long[] readWrite(String profile, int readers, long millis) throws Exception {
+		try (Connection connection = connect(profile); Statement statement = connection.createStatement()) {
+			statement.execute("CREATE TABLE IF NOT EXISTS item (id INTEGER PRIMARY KEY, name TEXT)");
+		}
+		AtomicLong reads = new AtomicLong();
+		AtomicLong writes = new AtomicLong();
+		AtomicLong busy = new AtomicLong();
+		long deadline = System.currentTimeMillis() + millis;
+		ExecutorService executor = Executors.newFixedThreadPool(readers + 1);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		futures.add(executor.submit(() -> {
+			try (Connection connection = connect(profile); Statement statement = connection.createStatement()) {
+				while (System.currentTimeMillis() < deadline) {
+					try {
+						statement.execute("INSERT INTO item (name) VALUES ('item')");
+						writes.incrementAndGet();
+					} catch (SQLException e) {
+						if (!isBusy(e))
+							throw e;
+					}
+				}
+			}
+			return null;
+		}));
+		for (int i = 0; i < readers; i++) {
+			futures.add(executor.submit(() -> {
+				try (Connection connection = connect(profile); Statement statement = connection.createStatement()) {
+					while (System.currentTimeMillis() < deadline) {
+						try (ResultSet result = statement.executeQuery("SELECT MAX(id) FROM item")) {
+							result.next();
+							reads.incrementAndGet();
+						} catch (SQLException e) {
+							if (!isBusy(e))
+								throw e;
+							busy.incrementAndGet();
+						}
+					}
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures)
+			future.get();
+		executor.shutdown();
+		return new long[] { reads.get(), writes.get(), busy.get() };
+	}
+
+	/**
+	 * Compare the read and write throughput of the default and wal profiles
+	 * with 4 readers and one writer: WAL readers are never blocked by the
+	 * writer. Sized by the load.millis system property (duration of each
+	 * profile).
+	 */
+	public void testProfileThroughput() throws Exception {
+		long millis = Long.getLong("load.millis", 500);
+		long defaultReads = 0;
+		for (String profile : new String[] { "default", "wal" }) {
+			try {
+				long[] counts = readWrite(profile, 4, millis);
+				LOG.infof("%s profile: %.0f reads/s, %.0f writes/s, %d reads blocked by the writer", profile,
+						counts[0] * 1000.0 / millis, counts[1] * 1000.0 / millis, counts[2]);
+				// readers of a rollback journal may all be starved by the writer
+				assertTrue(counts[1] > 0);
+				if ("default".equals(profile)) {
+					defaultReads = counts[0];
+				} else {
+					assertEquals(0, counts[2]);
+					assertTrue("WAL readers must outrun rollback journal ones", counts[0] > defaultReads);
+				}
+			} finally {
+				new File(profile + "_" + database).delete();
+				new File(profile + "_" + database + "-wal").delete();
+				new File(profile + "_" + database + "-shm").delete();
+			}
+		}
+	}
+
+	/**
+	 * A writer holding the exclusive lock blocks the readers of a rollback
+	 * journal, not those of a write-ahead log.
+	 */
+	public void testWalReadersNotBlocked() throws Exception {
+		for (String profile : new String[] { "default", "wal" }) {
+			try (Connection writer = connect(profile); Connection reader = connect(profile)) {
+				try (Statement statement = writer.createStatement()) {
+					statement.execute("CREATE TABLE IF NOT EXISTS item (id INTEGER PRIMARY KEY, name TEXT)");
+					statement.execute("BEGIN EXCLUSIVE");
+					statement.execute("INSERT INTO item (name) VALUES ('item')");
+				}
+				try (Statement statement = reader.createStatement();
+						ResultSet result = statement.executeQuery("SELECT COUNT(*) FROM item")) {
+					assertTrue(profile + " readers must not be blocked", "wal".equals(profile));
+					assertTrue(result.next());
+					assertEquals(0, result.getLong(1));
+				} catch (SQLException e) {
+					assertTrue(isBusy(e));
+					assertEquals("default", profile);
+				}
+				try (Statement statement = writer.createStatement()) {
+					statement.execute("ROLLBACK");
+				}
+			} finally {
+				new File(profile + "_" + database).delete();
+				new File(profile + "_" + database + "-wal").delete();
+				new File(profile + "_" + database + "-shm").delete();
+			}
+		}
+	}
+
+	protected void tearDown() {
+		pool.close();
+		new File(database).delete();
+	}
+
+}
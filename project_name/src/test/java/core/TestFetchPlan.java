@@ -0,0 +1,116 @@
+package core;
+
+import java.io.File;
+import java.util.List;
+
+import javax.persistence.PersistenceException;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+
+import junit.framework.TestCase;
+
+import core.entities.Author;
+import core.entities.Post;
+import core.entities.Profile;
+
+public class TestFetchPlan extends TestCase {
+
+	private String database = "test_fetch_plan.db";
+	private SessionFactory entityManagerFactory = null;
+	private EntityManagerPool pool = null;
+	private Session entityManager = null;
+
+	protected void setUp() {
+		Configuration configuration = HibernateUtil.createConfiguration("test.cfg.xml");
+		configuration.setProperty("hibernate.connection.url", "jdbc:sqlite:" + database);
+		// one select per lazy association
+		configuration.setProperty("hibernate.default_batch_fetch_size", "1");
+		configuration.addAnnotatedClass(Profile.class);
+		configuration.addAnnotatedClass(Author.class);
+		configuration.addAnnotatedClass(Post.class);
+		entityManagerFactory = configuration.buildSessionFactory();
+		pool = EntityManagerPool.create(entityManagerFactory);
+
+		Session session = entityManagerFactory.openSession();
+		session.beginTransaction();
+		for (int i = 0; i < 10; i++) {
+			Profile profile = new Profile("Bio " + i);
+			Author author = new Author("Author " + i, profile);
+			session.save(profile);
+			session.save(author);
+			session.save(new Post("First " + i, author));
+			session.save(new Post("Second " + i, author));
+		}
+		session.getTransaction().commit();
+		session.close();
+
+		entityManager = pool.acquire();
+	}
+
+	public void testFetchClause() {
+		QueryBuilder<Post> builder = new QueryBuilder<Post>(Post.class, entityManager).fetch("author.profile");
+		assertEquals("LEFT JOIN FETCH a_0.author AS a_1 LEFT JOIN FETCH a_1.profile AS a_2", builder.fetchClause());
+
+		QueryBuilder<Author> authors = new QueryBuilder<Author>(Author.class, entityManager).fetch("posts");
+		assertTrue(authors.statement().startsWith("SELECT DISTINCT a_0\n"));
+		authors.limit(5);
+		assertEquals("", authors.fetchClause());
+		assertTrue(authors.statement().startsWith("SELECT ( a_0)"));
+
+		try {
+			new QueryBuilder<Post>(Post.class, entityManager).fetch("title");
+			fail("Only associations can be fetched");
+		} catch (PersistenceException e) {
+		}
+	}
+
+	public void testDetectsLazyLoadsInLoop() {
+		NPlusOneDetector detector = NPlusOneDetector.of(entityManager);
+		assertNotNull(detector);
+
+		List<Post> posts = new QueryBuilder<Post>(Post.class, entityManager).like("title", "First%").build()
+				.getResultList();
+		for (Post post : posts)
+			post.getAuthor().getName();
+
+		assertEquals(11, detector.getStatementCount());
+		assertEquals(1, detector.getDetections().size());
+		assertEquals(Author.class.getName(), detector.getDetections().get(0));
+	}
+
+	public void testFetchAvoidsLazyLoads() {
+		NPlusOneDetector detector = NPlusOneDetector.of(entityManager);
+
+		List<Post> posts = new QueryBuilder<Post>(Post.class, entityManager).like("title", "First%")
+				.fetch("author.profile").build().getResultList();
+		for (Post post : posts)
+			post.getAuthor().getProfile().getBio();
+
+		List<Author> authors = new QueryBuilder<Author>(Author.class, entityManager).fetch("posts").build()
+				.getResultList();
+		assertEquals(10, authors.size());
+		for (Author author : authors)
+			assertEquals(2, author.getPosts().size());
+
+		assertEquals(2, detector.getStatementCount());
+		assertTrue(detector.getDetections().isEmpty());
+	}
+
+	public void testDetectsCollectionRole() {
+		NPlusOneDetector detector = NPlusOneDetector.of(entityManager);
+
+		for (Author author : new QueryBuilder<Author>(Author.class, entityManager).build().getResultList())
+			author.getPosts().size();
+
+		assertEquals(Author.class.getName() + ".posts", detector.getDetections().get(0));
+	}
+
+	protected void tearDown() {
+		pool.release(entityManager);
+		entityManagerFactory.close();
+		new File(database).delete();
+	}
+
+}
@@ -0,0 +1,180 @@
+package core;
+
+import java.io.File;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.PersistenceException;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.jboss.logging.Logger;
+
+import junit.framework.TestCase;
+
+import core.entities.Profile;
+
+public class TestGroupCommitWriter extends TestCase {
+
+	private static final Logger LOG = Logger.getLogger(TestGroupCommitWriter.class);
+
+	private String database = "test_group_commit_writer.db";
+	private SessionFactory entityManagerFactory = null;
+	private GroupCommitWriter writer = null;
+
+	protected void setUp() {
+		Configuration configuration = HibernateUtil.createConfiguration("test.cfg.xml");
+		configuration.setProperty("hibernate.connection.url", "jdbc:sqlite:" + database);
+		configuration.setProperty("hibernate.connection.provider_class", SQLiteConnectionProvider.class.getName());
+		configuration.addAnnotatedClass(Profile.class);
+		entityManagerFactory = configuration.buildSessionFactory();
+		writer = new GroupCommitWriter(entityManagerFactory, 500, 2, 10000);
+	}
+
+	private long count() {
+		Session entityManager = entityManagerFactory.openSession();
+		try {
+			return GenericRepository.create(Profile.class, entityManager).count();
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	public void testGroupCommit() throws Exception {
+		List<CompletableFuture<Long>> ids = new ArrayList<CompletableFuture<Long>>();
+		Session entityManager = entityManagerFactory.openSession();
+		GenericRepository<Profile> repository = GenericRepository.create(Profile.class, entityManager);
+		repository.setGroupCommitWriter(writer);
+		for (int i = 0; i < 100; i++)
+			ids.add(repository.saveAsync(new Profile("Bio " + i)));
+		for (CompletableFuture<Long> id : ids)
+			assertNotNull(id.get());
+		entityManager.close();
+
+		assertEquals(100, count());
+		assertEquals(100, writer.getWriteCount());
+		assertTrue(writer.getBatchCount() < 100);
+	}
+
+	public void testFailureIsolation() throws Exception {
+		CompletableFuture<Serializable> first = writer.submit(entityManager -> entityManager.save(new Profile("First")));
+		CompletableFuture<Object> failure = writer.submit(entityManager -> {
+			throw new PersistenceException("Failing write");
+		});
+		CompletableFuture<Serializable> last = writer.submit(entityManager -> entityManager.save(new Profile("Last")));
+
+		assertNotNull(first.get());
+		assertNotNull(last.get());
+		try {
+			failure.get();
+			fail("The failing write must fail alone");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof PersistenceException);
+		}
+		assertEquals(2, count());
+		assertEquals(1, writer.getFailureCount());
+	}
+
+	public void testErrorIsolation() throws Exception {
+		CompletableFuture<Serializable> first = writer.submit(entityManager -> entityManager.save(new Profile("First")));
+		CompletableFuture<Object> failure = writer.submit(entityManager -> {
+			throw new AssertionError("Failing write");
+		});
+		try {
+			// a dead writer thread would never complete it
+			failure.get(10, TimeUnit.SECONDS);
+			fail("The failing write must fail alone");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof AssertionError);
+		}
+		assertNotNull(first.get());
+		assertNotNull(writer.submit(entityManager -> entityManager.save(new Profile("Last"))).get());
+		assertEquals(2, count());
+		assertEquals(1, writer.getFailureCount());
+		// the writer thread waits the backoff of its retries
+		assertTrue(writer.getRetryPolicy().getMaxBackoff() <= 50);
+	}
+
+	public void testClosed() throws Exception {
+		writer.close(1000);
+		try {
+			writer.submit(entityManager -> null).get();
+			fail("A closed writer must not accept writes");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof PersistenceException);
+		}
+	}
+
+	/**
+	 * Run writes concurrently, each in its own transaction or by the writer.
+	 *
+	 * @return The writes per second
+	 */
+	private double write(int writers, int writes, boolean groupCommit) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(writers);
+		List<Future<?>> futures = new ArrayList<Future<?>>();
+		long start = System.nanoTime();
+		for (int i = 0; i < writers; i++) {
+			futures.add(executor.submit(() -> {
+				for (int j = 0; j < writes; j++) {
+					if (groupCommit) {
+						writer.submit(entityManager -> entityManager.save(new Profile("Group"))).join();
+						continue;
+					}
+					Session entityManager = entityManagerFactory.openSession();
+					try {
+						entityManager.beginTransaction();
+						entityManager.save(new Profile("Single"));
+						entityManager.getTransaction().commit();
+					} finally {
+						entityManager.close();
+					}
+				}
+			}));
+		}
+		for (Future<?> future : futures)
+			future.get();
+		executor.shutdown();
+		return writers * writes / ((System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Compare the write throughput of a transaction per write and of group
+	 * commits from 1 to 256 concurrent writers: concurrent writes must share
+	 * commits, and group commits must outrun a transaction per write at 256
+	 * writers. Sized by the load.writes system property (writes per writer).
+	 */
+	public void testThroughput() throws Exception {
+		int writes = Integer.getInteger("load.writes", 4);
+		long total = 0;
+		for (int writers : new int[] { 1, 4, 16, 64, 256 }) {
+			double single = write(writers, writes, false);
+			long batches = writer.getBatchCount();
+			double group = write(writers, writes, true);
+			double writesPerCommit = (double) writers * writes / (writer.getBatchCount() - batches);
+			total += 2 * writers * writes;
+			LOG.infof("%d writers: %.0f writes/s by transaction, %.0f writes/s by group commit "
+					+ "(%.1f writes per commit)", writers, single, group, writesPerCommit);
+			if (writers >= 64)
+				assertTrue(writers + " writers must share commits", writesPerCommit > 1);
+			if (writers == 256)
+				assertTrue("Group commit must outrun a transaction per write", group > single);
+		}
+		assertEquals(total, count());
+	}
+
+	protected void tearDown() {
+		writer.close(1000);
+		entityManagerFactory.close();
+		new File(database).delete();
+	}
+
+}
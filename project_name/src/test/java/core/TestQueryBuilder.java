@@ -0,0 +1,290 @@
+package core;
+
+import java.io.File;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.persistence.Tuple;
+
+import org.hibernate.QueryException;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+
+import junit.framework.TestCase;
+
+import foo.bar.entities.Message;
+import foo.bar.entities.MessageSummary;
+import foo.bar.repositories.MessageRepository;
+
+public class TestQueryBuilder extends TestCase {
+
+	private String database = "test_query_builder.db";
+	private Session entityManager = null;
+	private SessionFactory entityManagerFactory = null;
+
+	protected void setUp() {
+		Configuration configuration = HibernateUtil.createConfiguration("test.cfg.xml");
+		configuration.setProperty("hibernate.connection.url", "jdbc:sqlite:" + database);
+		entityManagerFactory = configuration.buildSessionFactory();
+		entityManager = entityManagerFactory.openSession();
+	}
+
+	public void testDeterministicStatement() {
+		QueryBuilder<Message> first = new QueryBuilder<Message>(Message.class, entityManager);
+		QueryBuilder<Message> second = new QueryBuilder<Message>(Message.class, entityManager);
+		first.like("content", "Hello").gt("id", 1L).desc("id");
+		second.like("content", "World").gt("id", 2L).desc("id");
+
+		assertEquals(first.statement(), second.statement());
+		assertEquals("SELECT ( a_0)\nFROM Message AS a_0 \nWHERE 1 = 1 AND a_0.content LIKE :p_0 AND a_0.id > :p_1"
+				+ "\nORDER BY a_0.id DESC", first.statement());
+	}
+
+	public void testStatementCache() {
+		StatementCache cache = QueryBuilder.getStatementCache();
+		QueryBuilder<Message> builder = new QueryBuilder<Message>(Message.class, entityManager).eq("content", "a");
+		builder.statement();
+
+		long hits = cache.getHitCount();
+		new QueryBuilder<Message>(Message.class, entityManager).eq("content", "b").statement();
+		assertEquals(hits + 1, cache.getHitCount());
+
+		QueryBuilder<Message> reordered = new QueryBuilder<Message>(Message.class, entityManager).gt("id", 1L)
+				.eq("content", "a");
+		QueryBuilder<Message> ordered = new QueryBuilder<Message>(Message.class, entityManager).eq("content", "a")
+				.gt("id", 1L);
+		assertFalse(ordered.statement().equals(reordered.statement()));
+		assertTrue(reordered.statement().contains("a_0.id > :p_0 AND a_0.content = :p_1"));
+		assertTrue(ordered.countStatement().contains("a_0.content = :p_0 AND a_0.id > :p_1"));
+		assertTrue(ordered.desc("id").statement().endsWith("ORDER BY a_0.id DESC"));
+	}
+
+	public void testSameEntitySubquery() {
+		MessageRepository repository = new MessageRepository(entityManager);
+		entityManager.beginTransaction();
+		repository.save(new Message("Hello"));
+		repository.save(new Message("World"));
+		entityManager.getTransaction().commit();
+
+		QueryBuilder<Message> builder = repository.createQueryBuilder().eq("content", "Hello");
+		builder.exists(builder.subquery(Message.class).eq("content", "World"));
+		assertEquals(1, builder.build().getResultList().size());
+
+		builder = repository.createQueryBuilder();
+		builder.exists(builder.subquery(Message.class).eq("content", "None"));
+		assertTrue(builder.build().getResultList().isEmpty());
+	}
+
+	public void testSubqueryNaming() {
+		QueryBuilder<Message> builder = new QueryBuilder<Message>(Message.class, entityManager);
+		QueryBuilder<Message> subquery = builder.subquery(Message.class);
+		builder.eq("content", "Hello").exists(subquery.eq("content", "World"));
+
+		assertTrue(subquery.statement().contains("FROM Message AS a_1"));
+		assertEquals(2, builder.getParameters().size());
+		assertTrue(builder.getParameters().containsKey("p_0"));
+		assertTrue(builder.getParameters().containsKey("p_1"));
+
+		try {
+			builder.exists(new QueryBuilder<Message>(Message.class, entityManager));
+			fail("Subqueries must share the naming of the outer query");
+		} catch (javax.persistence.PersistenceException e) {
+		}
+	}
+
+	public void testFilterByContentAndId() {
+		MessageRepository repository = new MessageRepository(entityManager);
+		entityManager.beginTransaction();
+		Long id = repository.save(new Message("Hello"));
+		entityManager.getTransaction().commit();
+
+		List<Message> messages = repository.filterByContentAndId("Hello", id.toString());
+		assertEquals(1, messages.size());
+		assertEquals(id, messages.get(0).getId());
+	}
+
+	public void testPage() {
+		MessageRepository repository = new MessageRepository(entityManager);
+		entityManager.beginTransaction();
+		for (int i = 0; i < 5; i++)
+			repository.save(new Message("Message " + i));
+		entityManager.getTransaction().commit();
+
+		Page<Message> first = repository.page(null, 2, "DESC");
+		assertEquals(2, first.getItems().size());
+		assertEquals("Message 4", first.getItems().get(0).getContent());
+		assertTrue(first.hasNext());
+
+		Page<Message> second = repository.page(first.getCursor(), 2, "DESC");
+		assertEquals("Message 2", second.getItems().get(0).getContent());
+
+		Page<Message> last = repository.page(second.getCursor(), 2, "DESC");
+		assertEquals(1, last.getItems().size());
+		assertFalse(last.hasNext());
+
+		try {
+			repository.page(first.getCursor(), 2, "ASC");
+			fail("Cursors must not continue a pagination in another direction");
+		} catch (javax.persistence.PersistenceException e) {
+		}
+		try {
+			Page.of(first.getItems(), 0, "DESC", Message::getId);
+			fail("Pages must have a positive limit");
+		} catch (IllegalArgumentException e) {
+		}
+		try {
+			repository.page(null, Integer.MAX_VALUE, "DESC");
+			fail("Pages must fetch limit + 1 rows without overflow");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+	public void testStream() {
+		MessageRepository repository = new MessageRepository(entityManager);
+		entityManager.beginTransaction();
+		for (int i = 0; i < 5; i++)
+			repository.save(new Message("Message " + i));
+		entityManager.getTransaction().commit();
+		entityManager.clear();
+
+		try (Stream<Message> messages = repository.stream(2)) {
+			assertEquals(5, messages.peek(m -> assertTrue(entityManager.contains(m))).count());
+		}
+		assertEquals(0, entityManager.getStatistics().getEntityCount());
+
+		try (Stream<Message> messages = repository.createFilter().like("content", "Message%").stream()) {
+			assertEquals(5, messages.count());
+		}
+		assertEquals(0, entityManager.getStatistics().getEntityCount());
+	}
+
+	public void testCountExistsDelete() {
+		MessageRepository repository = new MessageRepository(entityManager);
+		entityManager.beginTransaction();
+		for (int i = 0; i < 5; i++)
+			repository.save(new Message(i % 2 == 0 ? "Even" : "Odd"));
+		entityManager.getTransaction().commit();
+		entityManager.clear();
+
+		assertEquals(5, repository.count());
+		assertEquals(3, repository.createQueryBuilder().eq("content", "Even").count());
+		assertEquals(2, repository.createFilter().like("content", "Odd").count());
+		assertTrue(repository.createQueryBuilder().eq("content", "Odd").exists());
+		assertFalse(repository.createFilter().like("content", "None").exists());
+		assertEquals(0, entityManager.getStatistics().getEntityCount());
+
+		EntityFilter<Message> filter = repository.createFilter().like("content", "Odd");
+		assertEquals(2, filter.count());
+		assertEquals(2, filter.list().size());
+		entityManager.clear();
+
+		EntityFilter<Message> rows = repository.createFilter().like("content", "Odd")
+				.setResultTransformer(org.hibernate.transform.Transformers.TO_LIST);
+		assertTrue(rows.exists());
+		assertTrue(((List<?>) rows.list()).get(0) instanceof List);
+		entityManager.clear();
+
+		entityManager.beginTransaction();
+		Long id = repository.createQueryBuilder().eq("content", "Even").limit(1).build().getSingleResult().getId();
+		entityManager.clear();
+		assertTrue(repository.deleteById(id));
+		assertFalse(repository.deleteById(id));
+		assertEquals(2, repository.createQueryBuilder().eq("content", "Even").deleteWhere());
+		assertEquals(2, repository.createFilter().like("content", "Odd").deleteWhere());
+		entityManager.getTransaction().commit();
+
+		assertFalse(repository.existsById(id));
+		assertEquals(0, repository.count());
+		assertEquals(0, entityManager.getStatistics().getEntityCount());
+	}
+
+	public void testBulkBuilders() {
+		MessageRepository repository = new MessageRepository(entityManager);
+		entityManager.beginTransaction();
+		for (int i = 0; i < 10; i++)
+			repository.save(new Message("Message " + i));
+		entityManager.getTransaction().commit();
+		entityManager.clear();
+
+		UpdateBuilder<Message> update = repository.createUpdateBuilder().set("content", "Archived").in("content",
+				java.util.Arrays.asList("Message 1", "Message 2", "Message 3"));
+		assertEquals("UPDATE Message AS a_0 SET a_0.content = :p_0\nWHERE 1 = 1 AND a_0.content IN :p_1",
+				update.statement());
+		assertEquals(3, update.execute(4));
+		assertEquals(3, repository.createQueryBuilder().eq("content", "Archived").count());
+
+		DeleteBuilder<Message> delete = repository.createDeleteBuilder();
+		delete.eq("content", "Archived").exists(delete.subquery(Message.class).gt("id", 0L));
+		assertTrue(delete.chunkStatement().endsWith("AND a_0.id >= :id_low AND a_0.id < :id_high"));
+		assertEquals(3, delete.execute(2));
+		assertEquals(0, entityManager.getStatistics().getEntityCount());
+
+		entityManager.beginTransaction();
+		assertEquals(7, repository.createDeleteBuilder().execute());
+		entityManager.getTransaction().commit();
+		assertEquals(0, repository.count());
+
+		try {
+			entityManager.beginTransaction();
+			repository.createDeleteBuilder().execute(10);
+			fail("Chunked statements must not run in a transaction");
+		} catch (javax.persistence.PersistenceException e) {
+			entityManager.getTransaction().rollback();
+		}
+	}
+
+	public void testProjections() {
+		MessageRepository repository = new MessageRepository(entityManager);
+		entityManager.beginTransaction();
+		for (int i = 0; i < 5; i++)
+			repository.save(new Message("Message " + i));
+		entityManager.getTransaction().commit();
+		entityManager.clear();
+
+		QueryBuilder<Message> builder = repository.createQueryBuilder().select("id", "content", "dateCreated")
+				.like("content", "Message%").desc("id");
+		List<MessageSummary> summaries = builder.as(MessageSummary.class).getResultList();
+		assertEquals(5, summaries.size());
+		assertEquals("Message 4", summaries.get(0).getContent());
+		assertNotNull(summaries.get(0).getDateCreated());
+
+		List<Tuple> tuples = builder.tuples().getResultList();
+		assertEquals(summaries.get(0).getId(), tuples.get(0).get("id"));
+		assertEquals("Message 4", tuples.get(0).get("content"));
+		assertEquals(0, entityManager.getStatistics().getEntityCount());
+
+		Page<MessageSummary> page = repository.pageSummaries(null, 2, "DESC");
+		assertEquals(2, page.getItems().size());
+		assertEquals("Message 2", repository.pageSummaries(page.getCursor(), 2, "DESC").getItems().get(0).getContent());
+
+		try {
+			repository.createQueryBuilder().as(MessageSummary.class);
+			fail("Projections must select paths");
+		} catch (javax.persistence.PersistenceException e) {
+		}
+	}
+
+	public void testPropertyTypeIndex() {
+		PropertyTypeIndex index = PropertyTypeIndex.of(entityManagerFactory);
+		PropertyTypeIndex.PropertyPath id = index.get(Message.class, "id");
+
+		assertSame(id, index.get(Message.class, "id"));
+		assertEquals(Long.class, id.getReturnedClass());
+		assertEquals(42L, id.parseValue("42"));
+		assertSame(id.getType(), HibernateUtil.getPropertyType(Message.class, "id", entityManagerFactory));
+
+		try {
+			index.get(Message.class, "content.id");
+			fail();
+		} catch (QueryException e) {
+		}
+	}
+
+	protected void tearDown() {
+		entityManager.close();
+		entityManagerFactory.close();
+		new File(database).delete();
+	}
+
+}
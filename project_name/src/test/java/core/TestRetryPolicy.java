@@ -0,0 +1,70 @@
+package core;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.PersistenceException;
+
+import org.hibernate.exception.LockAcquisitionException;
+
+import junit.framework.TestCase;
+
+public class TestRetryPolicy extends TestCase {
+
+	private RetryPolicy policy = new RetryPolicy(3, 0, 0);
+
+	public void testRetryable() {
+		assertTrue(policy.isRetryable(new LockAcquisitionException("busy", new SQLException("busy", null, 5))));
+		assertTrue(policy.isRetryable(new PersistenceException(new SQLException("locked", null, 6))));
+		// SQLITE_BUSY_SNAPSHOT
+		assertTrue(policy.isRetryable(new PersistenceException(new SQLException("busy", null, 517))));
+		assertFalse(policy.isRetryable(new PersistenceException(new SQLException("constraint", null, 19))));
+		assertFalse(policy.isRetryable(new IllegalStateException()));
+		assertFalse(policy.isRetryable(null));
+	}
+
+	public void testRetry() {
+		LockAcquisitionException busy = new LockAcquisitionException("busy", new SQLException("busy", null, 5));
+		long retries = RetryPolicy.getRetryCount();
+		long giveUps = RetryPolicy.getGiveUpCount();
+
+		assertTrue(policy.retry(busy, 1));
+		assertTrue(policy.retry(busy, 2));
+		assertFalse(policy.retry(busy, 3));
+		assertFalse(policy.retry(new IllegalStateException(), 1));
+
+		assertEquals(retries + 2, RetryPolicy.getRetryCount());
+		assertEquals(giveUps + 1, RetryPolicy.getGiveUpCount());
+	}
+
+	public void testRetryBudget() {
+		LockAcquisitionException busy = new LockAcquisitionException("busy", new SQLException("busy", null, 5));
+		assertFalse(policy.retry(busy, 1, 0));
+
+		RetryPolicy policy = new RetryPolicy(1000, 10, 50);
+		long timeout = 200;
+		long start = System.nanoTime();
+		int attempt = 1;
+		while (policy.retry(busy, attempt, timeout - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)))
+			attempt++;
+		// each backoff is shorter than the time left, but for the sleep granularity
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < timeout + 20);
+		assertTrue(attempt < policy.getMaxAttempts());
+	}
+
+	public void testBackoff() {
+		RetryPolicy policy = new RetryPolicy(10, 10, 50);
+		for (int i = 0; i < 100; i++) {
+			assertTrue(policy.backoff(1) <= 10);
+			assertTrue(policy.backoff(2) <= 20);
+			assertTrue(policy.backoff(9) <= 50);
+			assertTrue(policy.backoff(64) >= 0);
+		}
+		try {
+			new RetryPolicy(0, 10, 50);
+			fail("At least one attempt must be made");
+		} catch (IllegalArgumentException e) {
+		}
+	}
+
+}
@@ -0,0 +1,93 @@
+package core.cache;
+
+import java.io.File;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+
+import junit.framework.TestCase;
+
+import core.HibernateUtil;
+import core.QueryBuilder;
+import foo.bar.entities.Message;
+
+public class TestCacheRegionFactory extends TestCase {
+
+	private String database = "test_cache.db";
+	private SessionFactory entityManagerFactory = null;
+	private CacheRegionFactory regionFactory = null;
+
+	protected void setUp() {
+		Configuration configuration = HibernateUtil.createConfiguration("test.cfg.xml");
+		configuration.setProperty("hibernate.connection.url", "jdbc:sqlite:" + database);
+		configuration.setProperty("hibernate.cache.region.max_size", "2");
+		entityManagerFactory = configuration.buildSessionFactory();
+		regionFactory = HibernateUtil.getCacheRegionFactory(entityManagerFactory);
+	}
+
+	private Long save(String content) {
+		Session entityManager = entityManagerFactory.openSession();
+		entityManager.beginTransaction();
+		Message message = new Message(content);
+		entityManager.save(message);
+		entityManager.getTransaction().commit();
+		entityManager.close();
+		return message.getId();
+	}
+
+	private Message find(Long id) {
+		Session entityManager = entityManagerFactory.openSession();
+		Message message = entityManager.find(Message.class, id);
+		entityManager.close();
+		return message;
+	}
+
+	public void testEntityCache() {
+		BoundedCache<Object, Object> cache = regionFactory.getRegions().get(Message.class.getName()).getCache();
+		Long id = save("Hello");
+
+		long hits = cache.getHitCount();
+		assertEquals("Hello", find(id).getContent());
+		assertEquals(hits + 1, cache.getHitCount());
+
+		// a hit too
+		Session entityManager = entityManagerFactory.openSession();
+		entityManager.beginTransaction();
+		entityManager.find(Message.class, id).setContent("World");
+		entityManager.getTransaction().commit();
+		entityManager.close();
+
+		long misses = cache.getMissCount();
+		assertEquals("World", find(id).getContent());
+		assertEquals(misses + 1, cache.getMissCount());
+		assertEquals("World", find(id).getContent());
+		assertEquals(hits + 3, cache.getHitCount());
+
+		save("a");
+		save("b");
+		assertTrue(cache.getSize() <= 2);
+		assertTrue(cache.getEvictionCount() > 0);
+	}
+
+	public void testQueryCache() {
+		save("Hello");
+		BoundedCache<Object, Object> cache = regionFactory.getRegions()
+				.get("org.hibernate.cache.internal.StandardQueryCache").getCache();
+
+		Session entityManager = entityManagerFactory.openSession();
+		long hits = cache.getHitCount();
+		new QueryBuilder<Message>(Message.class, entityManager).eq("content", "Hello").cacheable().build()
+				.getResultList();
+		assertEquals(1, new QueryBuilder<Message>(Message.class, entityManager).eq("content", "Hello").cacheable()
+				.build().getResultList().size());
+		assertEquals(hits + 1, cache.getHitCount());
+		entityManager.close();
+	}
+
+	protected void tearDown() {
+		entityManagerFactory.close();
+		new File(database).delete();
+	}
+
+}
@@ -0,0 +1,59 @@
+package core.entities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+
+import core.EntityModel;
+
+/**
+ * An author of {@link Post}s, used by the fetch plan tests.
+ */
+@Entity
+public class Author extends EntityModel {
+
+	private String name;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	private Profile profile;
+
+	@OneToMany(mappedBy = "author")
+	private List<Post> posts = new ArrayList<Post>();
+
+	public Author() {
+	}
+
+	public Author(String name, Profile profile) {
+		this.name = name;
+		this.profile = profile;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public void setName(String name) {
+		this.name = name;
+	}
+
+	public Profile getProfile() {
+		return profile;
+	}
+
+	public void setProfile(Profile profile) {
+		this.profile = profile;
+	}
+
+	public List<Post> getPosts() {
+		return posts;
+	}
+
+	public void setPosts(List<Post> posts) {
+		this.posts = posts;
+	}
+
+}
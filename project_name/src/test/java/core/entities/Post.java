@@ -0,0 +1,44 @@
+package core.entities;
+
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.ManyToOne;
+
+import core.EntityModel;
+
+/**
+ * A post of an {@link Author}, used by the fetch plan tests.
+ */
+@Entity
+public class Post extends EntityModel {
+
+	private String title;
+
+	@ManyToOne(fetch = FetchType.LAZY)
+	private Author author;
+
+	public Post() {
+	}
+
+	public Post(String title, Author author) {
+		this.title = title;
+		this.author = author;
+	}
+
+	public String getTitle() {
+		return title;
+	}
+
+	public void setTitle(String title) {
+		this.title = title;
+	}
+
+	public Author getAuthor() {
+		return author;
+	}
+
+	public void setAuthor(Author author) {
+		this.author = author;
+	}
+
+}
@@ -0,0 +1,30 @@
+package core.entities;
+
+import javax.persistence.Entity;
+
+import core.EntityModel;
+
+/**
+ * A profile of an {@link Author}, used by the fetch plan tests.
+ */
+@Entity
+public class Profile extends EntityModel {
+
+	private String bio;
+
+	public Profile() {
+	}
+
+	public Profile(String bio) {
+		this.bio = bio;
+	}
+
+	public String getBio() {
+		return bio;
+	}
+
+	public void setBio(String bio) {
+		this.bio = bio;
+	}
+
+}
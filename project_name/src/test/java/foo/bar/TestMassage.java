@@ -1,21 +1,31 @@
 package foo.bar;
 
 import java.io.File;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.hibernate.cfg.Configuration;
+import org.jboss.logging.Logger;
 
 import junit.framework.TestCase;
 
+import core.EntityFilter;
 import core.GenericRepository;
 import core.HibernateUtil;
 import foo.bar.entities.Message;
 import foo.bar.repositories.MessageRepository;
+import util.DateUtil;
 
 public class TestMassage extends TestCase {
 
+	private static final Logger LOG = Logger.getLogger(TestMassage.class);
+
 	private String database = "test.db12";
 	private Session entityManager = null;
 	private SessionFactory entityManagerFactory = null;
@@ -43,6 +53,110 @@ public class TestMassage extends TestCase {
 		main(new MessageRepository(entityManager));
 	}
 
+	public void testSaveAll() {
+		MessageRepository messageRepository = new MessageRepository(entityManager);
+		List<Message> messages = new ArrayList<Message>();
+		for (int i = 0; i < 1000; i++)
+			messages.add(createMessage("Message " + i));
+
+		messageRepository.getEntityManager().beginTransaction();
+		List<Long> ids = messageRepository.saveAll(messages);
+		messageRepository.getEntityManager().getTransaction().commit();
+
+		assertTrue(ids.size() == 1000);
+		assertTrue(new HashSet<Long>(ids).size() == 1000);
+		assertTrue(messageRepository.findAll().size() == 1000);
+	}
+
+	/**
+	 * Messages generated one at a time, so only the session may hold them.
+	 */
+	private class Messages extends AbstractCollection<Message> {
+
+		private int size;
+		private int peak = 0;
+
+		private Messages(int size) {
+			this.size = size;
+		}
+
+		@Override
+		public Iterator<Message> iterator() {
+			return new Iterator<Message>() {
+
+				private int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					return next < size;
+				}
+
+				@Override
+				public Message next() {
+					peak = Math.max(peak, (int) entityManager.getStatistics().getEntityCount());
+					return createMessage("Message " + next++);
+				}
+
+			};
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+	}
+
+	/**
+	 * Measure the rows per second of saveAll at 10k, 100k and 1M rows, the
+	 * session holding at most one JDBC batch of entities. Sized by the
+	 * load.rows system property (rows of the first level, the others being
+	 * 10 and 100 times as many).
+	 */
+	public void testSaveAllThroughput() {
+		MessageRepository messageRepository = new MessageRepository(entityManager);
+		int batchSize = entityManagerFactory.getSessionFactoryOptions().getJdbcBatchSize();
+		int rows = Integer.getInteger("load.rows", 10000);
+		long total = 0;
+		for (int size : new int[] { rows, 10 * rows, 100 * rows }) {
+			Messages messages = new Messages(size);
+			long start = System.nanoTime();
+			messageRepository.getEntityManager().beginTransaction();
+			List<Long> ids = messageRepository.saveAll(messages);
+			messageRepository.getEntityManager().getTransaction().commit();
+			double seconds = (System.nanoTime() - start) / 1e9;
+			total += size;
+			LOG.infof("saveAll of %d rows: %.0f rows/s, at most %d entities in session", size, size / seconds,
+					messages.peak);
+
+			assertEquals(size, ids.size());
+			assertTrue(messages.peak <= batchSize);
+			assertEquals(0, entityManager.getStatistics().getEntityCount());
+		}
+		assertEquals(total, messageRepository.count());
+	}
+
+	public void testBetweenDays() {
+		MessageRepository messageRepository = new MessageRepository(entityManager);
+		Date today = DateUtil.lowDateTime(new Date());
+		Date tomorrow = DateUtil.nextDayStart(today);
+		Date[] dates = { new Date(today.getTime() - 1), today, DateUtil.highDateTime(today), tomorrow };
+
+		messageRepository.getEntityManager().beginTransaction();
+		for (Date date : dates) {
+			Message message = createMessage(date.toString());
+			message.setDateCreated(date);
+			messageRepository.save(message);
+		}
+		messageRepository.getEntityManager().getTransaction().commit();
+
+		String day = DateUtil.dateToString(today);
+		List<Message> result = EntityFilter.create(Message.class, entityManager).between("dateCreated", day, day)
+				.list();
+		assertEquals(2, result.size());
+		assertEquals(1, DateUtil.getDateDifference(today, tomorrow));
+	}
+
 	public void main(GenericRepository<Message> messageRepository) {
 
 		assertTrue(new File(database).isFile());
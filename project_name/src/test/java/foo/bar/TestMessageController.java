@@ -0,0 +1,593 @@
+package foo.bar;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncListener;
+import javax.servlet.RequestDispatcher;
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletContext;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.jboss.logging.Logger;
+
+import junit.framework.TestCase;
+
+import core.EntityManagerFilter;
+import core.EntityManagerPool;
+import core.GroupCommitWriter;
+import core.HibernateUtil;
+import core.LatencyHistogram;
+import core.MetricsRegistry;
+import core.MetricsServlet;
+import core.RetryPolicy;
+import core.SQLitePragmaProfile;
+import foo.bar.controllers.MessageController;
+import foo.bar.entities.Message;
+import foo.bar.repositories.MessageRepository;
+
+/**
+ * Serves /message requests from many threads through a single controller
+ * instance, as a servlet container does. Servlet objects are dynamic proxies.
+ */
+public class TestMessageController extends TestCase {
+
+	private static final Logger LOG = Logger.getLogger(TestMessageController.class);
+
+	private static final int CLIENTS = 64;
+
+	private String database = "test_message_controller.db";
+	private SessionFactory entityManagerFactory = null;
+	private ServletContext context = null;
+	private MessageController controller = null;
+
+	protected void setUp() throws Exception {
+		Configuration configuration = HibernateUtil.createConfiguration("test.cfg.xml");
+		configuration.setProperty("hibernate.connection.url", "jdbc:sqlite:" + database);
+		// fail fast on SQLITE_BUSY, the retry policy waits instead
+		configuration.setProperty(SQLitePragmaProfile.PREFIX + "busy_timeout", "100");
+		configuration.setProperty(RetryPolicy.MAX_ATTEMPTS, "10");
+		entityManagerFactory = configuration.buildSessionFactory();
+
+		Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+		attributes.put("entity_manager_factory", entityManagerFactory);
+		attributes.put("entity_manager_pool", EntityManagerPool.create(entityManagerFactory));
+		context = proxy(ServletContext.class, attributes, Collections.<String, String> emptyMap(), null);
+
+		controller = new MessageController();
+		controller.init(proxy(ServletConfig.class, attributes, Collections.<String, String> emptyMap(), null));
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> T proxy(Class<T> type, Map<String, Object> attributes, Map<String, String> parameters, String method) {
+		return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { type }, (p, m, args) -> {
+			switch (m.getName()) {
+			case "getAttribute":
+				return attributes.get(args[0]);
+			case "setAttribute":
+				if (args[1] == null)
+					attributes.remove(args[0]);
+				else
+					attributes.put((String) args[0], args[1]);
+				return null;
+			case "removeAttribute":
+				return attributes.remove(args[0]);
+			case "getParameter":
+			case "getInitParameter":
+				return parameters.get(args[0]);
+			case "getParameterMap":
+				Map<String, String[]> values = new HashMap<String, String[]>();
+				parameters.forEach((name, value) -> values.put(name, new String[] { value }));
+				return values;
+			case "getAttributeNames":
+				return Collections.enumeration(attributes.keySet());
+			case "isAsyncSupported":
+				return true;
+			case "startAsync":
+				attributes.put("async_context", asyncContext(attributes));
+				return attributes.get("async_context");
+			case "isAsyncStarted":
+				return attributes.containsKey("async_context");
+			case "sendError":
+				attributes.put("status", args[0]);
+				return null;
+			case "setHeader":
+				attributes.put((String) args[0], args[1]);
+				return null;
+			case "getMethod":
+				return method;
+			case "getServletContext":
+				return context;
+			case "getRequestDispatcher":
+				return proxy(RequestDispatcher.class, attributes, parameters, method);
+			case "getInitParameterNames":
+				return Collections.emptyEnumeration();
+			case "getServletName":
+				return "message";
+			case "getProtocol":
+				return "HTTP/1.1";
+			case "hashCode":
+				return System.identityHashCode(p);
+			case "equals":
+				return p == args[0];
+			case "toString":
+				return type.getSimpleName();
+			}
+			Class<?> returnType = m.getReturnType();
+			if (returnType == boolean.class)
+				return false;
+			if (returnType == int.class)
+				return 0;
+			if (returnType == long.class)
+				return 0L;
+			return null;
+		});
+	}
+
+	/**
+	 * An async context completing on dispatch, as the container does once the
+	 * JSP is rendered. Its listeners are kept by the async_listeners attribute
+	 * so a test can time it out.
+	 */
+	private AsyncContext asyncContext(Map<String, Object> attributes) {
+		List<AsyncListener> listeners = new CopyOnWriteArrayList<AsyncListener>();
+		CountDownLatch done = new CountDownLatch(1);
+		attributes.put("async_done", done);
+		attributes.put("async_listeners", listeners);
+		return (AsyncContext) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { AsyncContext.class },
+				(p, m, args) -> {
+					switch (m.getName()) {
+					case "addListener":
+						listeners.add((AsyncListener) args[0]);
+						break;
+					case "dispatch":
+					case "complete":
+						if (done.getCount() > 0) {
+							for (AsyncListener listener : listeners)
+								listener.onComplete(null);
+							done.countDown();
+						}
+						break;
+					case "hashCode":
+						return System.identityHashCode(p);
+					case "equals":
+						return p == args[0];
+					}
+					return null;
+				});
+	}
+
+	private Map<String, Object> request(String method, Map<String, String> parameters) throws Exception {
+		return request(controller, method, parameters);
+	}
+
+	/**
+	 * Serve a request as the container does, through the entity manager
+	 * filter, waiting for the async processing to complete, if started.
+	 */
+	private Map<String, Object> request(MessageController controller, String method, Map<String, String> parameters)
+			throws Exception {
+		Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+		HttpServletRequest request = proxy(HttpServletRequest.class, attributes, parameters, method);
+		HttpServletResponse response = proxy(HttpServletResponse.class, attributes, parameters, method);
+		new EntityManagerFilter().doFilter(request, response, (req, res) -> {
+			controller.service(req, res);
+			if (req.isAsyncStarted())
+				return;
+			Session entityManager = (Session) req.getAttribute("entity_manager");
+			MessageRepository repository = (MessageRepository) req.getAttribute("repository");
+			assertSame(entityManager, repository.getEntityManager());
+			req.setAttribute("read_only", entityManager.isDefaultReadOnly());
+		});
+		CountDownLatch done = (CountDownLatch) attributes.get("async_done");
+		if (done != null) {
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			// released by the action thread once it is done too
+			for (int i = 0; i < 100 && attributes.containsKey("entity_manager"); i++)
+				Thread.sleep(10);
+		}
+		assertNull(attributes.get("entity_manager"));
+		return attributes;
+	}
+
+	private MessageController asyncController(int threads, int queueSize) throws Exception {
+		return asyncController(threads, queueSize, false);
+	}
+
+	private MessageController asyncController(int threads, int queueSize, boolean virtualThreads) throws Exception {
+		return asyncController(threads, queueSize, virtualThreads, 30000);
+	}
+
+	private MessageController asyncController(int threads, int queueSize, boolean virtualThreads, long timeout)
+			throws Exception {
+		Map<String, String> parameters = new HashMap<String, String>();
+		parameters.put("async.timeout", Long.toString(timeout));
+		parameters.put("async.virtual_threads", Boolean.toString(virtualThreads));
+		parameters.put("async", "true");
+		parameters.put("async.threads", Integer.toString(threads));
+		parameters.put("async.queue_size", Integer.toString(queueSize));
+		MessageController controller = new MessageController();
+		controller.init(proxy(ServletConfig.class, new ConcurrentHashMap<String, Object>(), parameters, null));
+		return controller;
+	}
+
+	public void testAsyncActions() throws Exception {
+		MessageController async = asyncController(4, 16);
+		try {
+			assertNotNull(async.getExecutor());
+			ExecutorService executor = Executors.newFixedThreadPool(8);
+			List<Future<Map<String, Object>>> responses = new ArrayList<Future<Map<String, Object>>>();
+			for (int i = 0; i < 8; i++) {
+				Map<String, String> post = new HashMap<String, String>();
+				post.put("message", "Async " + i);
+				responses.add(executor.submit((Callable<Map<String, Object>>) () -> request(async, "POST", post)));
+			}
+			for (Future<Map<String, Object>> response : responses) {
+				Map<String, Object> attributes = response.get();
+				assertNull(attributes.get("status"));
+				assertNotNull(attributes.get("messages"));
+			}
+			executor.shutdown();
+		} finally {
+			async.destroy();
+		}
+
+		Session entityManager = entityManagerFactory.openSession();
+		assertEquals(8, new MessageRepository(entityManager).findAll().size());
+		entityManager.close();
+	}
+
+	public void testAsyncRejection() throws Exception {
+		MessageController async = asyncController(1, 0);
+		CountDownLatch blocked = new CountDownLatch(1);
+		try {
+			async.getExecutor().execute(() -> {
+				try {
+					blocked.await();
+				} catch (InterruptedException e) {
+				}
+			});
+			Map<String, String> post = new HashMap<String, String>();
+			post.put("message", "Rejected");
+			Map<String, Object> attributes = request(async, "POST", post);
+			assertEquals(503, attributes.get("status"));
+			assertEquals("1", attributes.get("Retry-After"));
+			assertEquals(1, async.getExecutor().getRejectedCount());
+		} finally {
+			blocked.countDown();
+			async.destroy();
+		}
+
+		Session entityManager = entityManagerFactory.openSession();
+		assertTrue(new MessageRepository(entityManager).findAll().isEmpty());
+		entityManager.close();
+	}
+
+	/**
+	 * A POST timing out while waiting for the group commit writer: the
+	 * timeout responds and the late action no longer uses the request, but
+	 * its write is still committed.
+	 */
+	@SuppressWarnings("unchecked")
+	public void testAsyncTimeout() throws Exception {
+		GroupCommitWriter writer = new GroupCommitWriter(entityManagerFactory, 500, 2, 10000);
+		context.setAttribute("group_commit_writer", writer);
+		MessageController async = asyncController(1, 1);
+		EntityManagerPool pool = (EntityManagerPool) context.getAttribute("entity_manager_pool");
+		CountDownLatch writing = new CountDownLatch(1);
+		CountDownLatch blocked = new CountDownLatch(1);
+		try {
+			// hold the writer so the posted message waits for it
+			writer.submit(entityManager -> {
+				writing.countDown();
+				try {
+					blocked.await();
+				} catch (InterruptedException e) {
+				}
+				return null;
+			});
+			assertTrue(writing.await(10, TimeUnit.SECONDS));
+			Map<String, String> post = new HashMap<String, String>();
+			post.put("action", "post");
+			post.put("message", "Timed out");
+			Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
+			HttpServletRequest request = proxy(HttpServletRequest.class, attributes, post, "POST");
+			HttpServletResponse response = proxy(HttpServletResponse.class, attributes, post, "POST");
+			new EntityManagerFilter().doFilter(request, response, (req, res) -> async.service(req, res));
+			for (int i = 0; i < 1000 && writer.getQueuedCount() == 0; i++)
+				Thread.sleep(10);
+			assertEquals(1, writer.getQueuedCount());
+
+			for (AsyncListener listener : (List<AsyncListener>) attributes.get("async_listeners"))
+				listener.onTimeout(null);
+			assertEquals(0, ((CountDownLatch) attributes.get("async_done")).getCount());
+			assertEquals(503, attributes.get("status"));
+			assertNull(attributes.get("entity_manager"));
+
+			// interrupted, the action gives up waiting and its entity manager
+			for (int i = 0; i < 1000 && (async.getExecutor().getActiveCount() > 0 || pool.getActiveCount() > 0); i++)
+				Thread.sleep(10);
+			assertEquals(0, async.getExecutor().getActiveCount());
+			assertEquals(0, pool.getActiveCount());
+			assertNull(attributes.get("danger"));
+			assertNull(attributes.get("messages"));
+		} finally {
+			blocked.countDown();
+			async.destroy();
+			context.removeAttribute("group_commit_writer");
+			writer.close(1000);
+		}
+
+		Session entityManager = entityManagerFactory.openSession();
+		assertEquals(1, new MessageRepository(entityManager).count());
+		entityManager.close();
+	}
+
+	public void testReadOnlyGet() throws Exception {
+		Map<String, String> post = new HashMap<String, String>();
+		post.put("message", "Hello");
+		assertEquals(false, request("POST", post).get("read_only"));
+
+		Session entityManager = entityManagerFactory.openSession();
+		Long id = new MessageRepository(entityManager).findAll().get(0).getId();
+		entityManager.close();
+		Map<String, String> detail = new HashMap<String, String>();
+		detail.put("id", id.toString());
+		Map<String, Object> attributes = request("GET", detail);
+		assertEquals(true, attributes.get("read_only"));
+		assertEquals("Hello", attributes.get("message").toString());
+	}
+
+	public void testMalformedCursor() throws Exception {
+		Map<String, String> post = new HashMap<String, String>();
+		post.put("message", "Hello");
+		request("POST", post);
+
+		Map<String, String> page = new HashMap<String, String>();
+		page.put("cursor", "not a cursor");
+		Map<String, Object> attributes = request("GET", page);
+		assertNull(attributes.get("status"));
+		assertNotNull(attributes.get("warning"));
+		assertEquals(1, ((List<?>) attributes.get("messages")).size());
+	}
+
+	public void testGroupCommitPost() throws Exception {
+		GroupCommitWriter writer = new GroupCommitWriter(entityManagerFactory, 500, 2, 10000);
+		context.setAttribute("group_commit_writer", writer);
+		try {
+			ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+			List<Future<Map<String, Object>>> responses = new ArrayList<Future<Map<String, Object>>>();
+			for (int i = 0; i < CLIENTS; i++) {
+				Map<String, String> post = new HashMap<String, String>();
+				// as posted by the form of message.jsp
+				post.put("action", "post");
+				post.put("message", "Message " + i);
+				responses.add(executor.submit((Callable<Map<String, Object>>) () -> request("POST", post)));
+			}
+			for (Future<Map<String, Object>> response : responses) {
+				Map<String, Object> attributes = response.get();
+				assertNull(attributes.get("danger"));
+				assertEquals("Message was successfully created.", attributes.get("success"));
+				assertEquals(true, attributes.get("read_only"));
+			}
+			executor.shutdown();
+		} finally {
+			context.removeAttribute("group_commit_writer");
+			writer.close(1000);
+		}
+
+		assertEquals(CLIENTS, writer.getWriteCount());
+		assertTrue(writer.getBatchCount() <= CLIENTS);
+		Session entityManager = entityManagerFactory.openSession();
+		assertEquals(CLIENTS, new MessageRepository(entityManager).count());
+		entityManager.close();
+	}
+
+	public void testRetryOnBusy() throws Exception {
+		Session entityManager = entityManagerFactory.openSession();
+		entityManager.beginTransaction();
+		Long id = new MessageRepository(entityManager).save(new Message("Busy"));
+		entityManager.getTransaction().commit();
+		entityManager.close();
+
+		long retries = RetryPolicy.getRetryCount();
+		// hold the write lock until the delete fails once on SQLITE_BUSY
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+		connection.createStatement().execute("BEGIN IMMEDIATE");
+		Thread holder = new Thread(() -> {
+			try {
+				while (RetryPolicy.getRetryCount() == retries)
+					Thread.sleep(5);
+				connection.createStatement().execute("ROLLBACK");
+				connection.close();
+			} catch (Exception e) {
+				throw new RuntimeException(e);
+			}
+		});
+		holder.start();
+
+		Map<String, String> delete = new HashMap<String, String>();
+		delete.put("action", "delete");
+		delete.put("id", id.toString());
+		Map<String, Object> attributes = request("POST", delete);
+		holder.join();
+		assertNotNull(attributes.get("success"));
+		assertTrue(RetryPolicy.getRetryCount() > retries);
+
+		entityManager = entityManagerFactory.openSession();
+		assertEquals(0, new MessageRepository(entityManager).count());
+		entityManager.close();
+	}
+
+	/**
+	 * An idempotent action failing on SQLITE_BUSY until its async timeout is
+	 * not retried beyond it: 10 attempts would take seconds of backoff.
+	 */
+	public void testRetryWithinAsyncTimeout() throws Exception {
+		Session entityManager = entityManagerFactory.openSession();
+		entityManager.beginTransaction();
+		Long id = new MessageRepository(entityManager).save(new Message("Busy"));
+		entityManager.getTransaction().commit();
+		entityManager.close();
+
+		MessageController async = asyncController(1, 1, false, 300);
+		long retries = RetryPolicy.getRetryCount();
+		Connection connection = DriverManager.getConnection("jdbc:sqlite:" + database);
+		connection.createStatement().execute("BEGIN IMMEDIATE");
+		try {
+			Map<String, String> delete = new HashMap<String, String>();
+			delete.put("action", "delete");
+			delete.put("id", id.toString());
+			long start = System.nanoTime();
+			Map<String, Object> attributes = request(async, "POST", delete);
+			long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			assertEquals(500, attributes.get("status"));
+			assertTrue(RetryPolicy.getRetryCount() > retries);
+			// the timeout, then a last attempt waiting the busy timeout
+			assertTrue("Retried for " + elapsed + " ms", elapsed < 1000);
+		} finally {
+			connection.createStatement().execute("ROLLBACK");
+			connection.close();
+			async.destroy();
+		}
+	}
+
+	public void testConcurrentClients() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(CLIENTS);
+		List<Future<Map<String, Object>>> responses = new ArrayList<Future<Map<String, Object>>>();
+
+		for (int i = 0; i < CLIENTS; i++) {
+			Map<String, String> post = new HashMap<String, String>();
+			post.put("message", "Message " + i);
+			responses.add(executor.submit((Callable<Map<String, Object>>) () -> request("POST", post)));
+			responses.add(executor.submit(() -> request("GET", Collections.<String, String> emptyMap())));
+		}
+
+		for (Future<Map<String, Object>> response : responses) {
+			Map<String, Object> attributes = response.get();
+			assertNull(attributes.get("danger"));
+			assertNotNull(attributes.get("messages"));
+		}
+		executor.shutdown();
+
+		Session entityManager = entityManagerFactory.openSession();
+		List<Message> messages = new MessageRepository(entityManager).findAll();
+		entityManager.close();
+		assertEquals(CLIENTS, messages.size());
+	}
+
+	public void testMetrics() throws Exception {
+		LatencyHistogram histogram = MetricsRegistry.getInstance().getActionHistogram("message", "get");
+		long count = histogram.getCount();
+		for (int i = 0; i < 10; i++)
+			request("GET", Collections.<String, String> emptyMap());
+		assertEquals(count + 10, histogram.getCount());
+		assertTrue(histogram.getValueAtQuantile(0.5) <= histogram.getMax());
+
+		StringWriter metrics = new StringWriter();
+		MetricsServlet.write(new PrintWriter(metrics), entityManagerFactory,
+				(EntityManagerPool) context.getAttribute("entity_manager_pool"));
+		String text = metrics.toString();
+		assertTrue(text.contains("controller_action_duration_seconds_count{controller=\"message\",action=\"get\"} "
+				+ histogram.getCount()));
+		assertTrue(text.contains("controller_action_duration_seconds_bucket{controller=\"message\",action=\"get\",le=\"+Inf\"}"));
+		assertTrue(text.contains("hibernate_queries_executed_total 10"));
+		assertTrue(text.contains("connection_pool_acquired_total{pool=\"reader\"}"));
+		assertTrue(text.contains("entity_manager_pool_active 0"));
+		assertTrue(text.contains("entity_manager_pool_available "));
+		assertEquals(1, text.split("# TYPE connection_pool_size ", -1).length - 1);
+	}
+
+	/**
+	 * Load /message with clients each sending requests, POST and GET
+	 * in turn.
+	 * 
+	 * @return The client side latencies
+	 */
+	private LatencyHistogram load(MessageController controller, int clients, int requests) throws Exception {
+		LatencyHistogram latencies = new LatencyHistogram();
+		ExecutorService executor = Executors.newFixedThreadPool(clients);
+		List<Future<?>> responses = new ArrayList<Future<?>>();
+		for (int i = 0; i < clients; i++) {
+			int client = i;
+			responses.add(executor.submit((Callable<Void>) () -> {
+				for (int j = 0; j < requests; j++) {
+					Map<String, String> post = new HashMap<String, String>();
+					post.put("message", "Load " + client + " " + j);
+					long start = System.nanoTime();
+					Map<String, Object> attributes = j % 2 == 0 ? request(controller, "POST", post)
+							: request(controller, "GET", Collections.<String, String> emptyMap());
+					latencies.record(System.nanoTime() - start);
+					assertNull(attributes.get("status"));
+				}
+				return null;
+			}));
+		}
+		for (Future<?> response : responses)
+			response.get();
+		executor.shutdown();
+		return latencies;
+	}
+
+	/**
+	 * Compare the throughput and p99 latency of platform and virtual action
+	 * threads (the latter on Java 21+ only). Sized by the load.clients and
+	 * load.requests system properties.
+	 */
+	public void testPlatformVsVirtualThreads() throws Exception {
+		int clients = Integer.getInteger("load.clients", 32);
+		int requests = Integer.getInteger("load.requests", 8);
+		for (boolean virtualThreads : new boolean[] { false, true }) {
+			MessageController async = asyncController(8, clients, virtualThreads);
+			try {
+				if (virtualThreads && !async.getExecutor().isVirtualThreads()) {
+					LOG.infof("Virtual threads are not available on Java %s, skipped.",
+							System.getProperty("java.specification.version"));
+					continue;
+				}
+				long start = System.nanoTime();
+				LatencyHistogram latencies = load(async, clients, requests);
+				double seconds = (System.nanoTime() - start) / 1e9;
+				assertEquals(clients * requests, latencies.getCount());
+				assertEquals(0, async.getExecutor().getRejectedCount());
+				long p99 = latencies.getValueAtQuantile(0.99);
+				assertTrue(p99 > 0 && p99 <= latencies.getMax());
+				// within the default async.timeout, no action timed out
+				assertTrue(latencies.getMax() < TimeUnit.SECONDS.toNanos(30));
+				LOG.infof("%s threads: %.0f requests/s, p99 %.1f ms", virtualThreads ? "Virtual" : "Platform",
+						latencies.getCount() / seconds, p99 / 1e6);
+			} finally {
+				async.destroy();
+			}
+		}
+	}
+
+	protected void tearDown() {
+		controller.destroy();
+		entityManagerFactory.close();
+		new File(database).delete();
+	}
+
+}
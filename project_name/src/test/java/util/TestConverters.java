@@ -0,0 +1,65 @@
+package util;
+
+import java.math.BigDecimal;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+public class TestConverters extends TestCase {
+
+	public void testBuiltIn() throws ParseException {
+		assertEquals(10, Converters.convert(int.class, "10"));
+		assertEquals(10L, Converters.convert(Long.class, "10"));
+		assertEquals(Boolean.TRUE, Converters.convert(Boolean.class, "true"));
+		assertEquals(Boolean.FALSE, Converters.convert(boolean.class, "FALSE"));
+		assertEquals(Boolean.TRUE, new Parser("true").getBoolean());
+		assertEquals('a', Converters.convert(Character.class, "a"));
+		assertSame(Converters.get(Integer.class), Converters.get(int.class));
+	}
+
+	public void testResolved() throws ParseException {
+		assertEquals(TimeUnit.SECONDS, Converters.convert(TimeUnit.class, "SECONDS"));
+		assertEquals(new BigDecimal("1.5"), Converters.convert(BigDecimal.class, "1.5"));
+		UUID uuid = UUID.randomUUID();
+		assertEquals(uuid, Converters.convert(UUID.class, uuid.toString()));
+		assertSame(Converters.get(UUID.class), Converters.get(UUID.class));
+	}
+
+	public void testValues() throws ParseException {
+		Date date = new Date();
+		assertSame(date, Converters.convert(Date.class, date));
+		assertEquals(1L, Converters.convert(Long.class, 1));
+
+		Object[] values = (Object[]) Converters.convert(Long.class, new String[] { "1", "2" });
+		assertEquals(2L, values[1]);
+	}
+
+	public void testInvalid() {
+		try {
+			Converters.convert(Long.class, "a");
+			fail();
+		} catch (ParseException e) {
+		}
+		try {
+			Converters.convert(Long.class, "");
+			fail();
+		} catch (ParseException e) {
+		}
+		try {
+			Converters.convert(Runnable.class, "a");
+			fail();
+		} catch (ParseException e) {
+		}
+		for (String value : new String[] { "abc", "1", "yes" }) {
+			try {
+				Converters.convert(Boolean.class, value);
+				fail(value + " must not be converted to false");
+			} catch (ParseException e) {
+			}
+		}
+	}
+
+}
@@ -0,0 +1,68 @@
+package util;
+
+import java.sql.Timestamp;
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+public class TestDateUtil extends TestCase {
+
+	public void testParseAndFormat() throws ParseException {
+		Date date = DateUtil.stringToDate("29/02/2012");
+		assertEquals(29, DateUtil.getDay(date));
+		assertEquals(2, DateUtil.month(date));
+		assertEquals(2012, DateUtil.year(date));
+		assertEquals("29/02/2012", DateUtil.dateToString(date));
+		assertEquals(DateUtil.date(2012, 2, 29), date);
+
+		Date time = DateUtil.stringToDate("2012-02-29 13:45:10", "yyyy-MM-dd HH:mm:ss");
+		assertEquals("2012-02-29 13:45:10", DateUtil.TimeStampToString(new Timestamp(time.getTime())));
+
+		java.sql.Date sqlDate = DateUtil.strToSqlDate("29/02/2012");
+		assertEquals("29/02/2012", DateUtil.dateToString(sqlDate));
+		assertSame(DateUtil.getFormatter("dd/MM/yyyy"), DateUtil.getFormatter("dd/MM/yyyy"));
+	}
+
+	public void testStrictParsing() {
+		try {
+			DateUtil.stringToDate("29/02/2011");
+			fail();
+		} catch (ParseException e) {
+		}
+		try {
+			DateUtil.stringToDate("2011-01-01");
+			fail();
+		} catch (ParseException e) {
+		}
+	}
+
+	public void testCurrentDate() {
+		Date now = new Date();
+		assertEquals(DateUtil.year(now), DateUtil.getCurrentYear());
+		assertEquals(DateUtil.month(now), DateUtil.getCurrentMonth());
+	}
+
+	public void testDayBoundaries() {
+		ZoneId zone = ZoneId.of("America/Sao_Paulo");
+		DayBoundaries days = DayBoundaries.of(zone);
+		assertSame(days, DayBoundaries.of(zone));
+
+		// daylight saving time started at midnight: the day starts at 01:00
+		long noon = ZonedDateTime.of(2016, 10, 16, 12, 0, 0, 0, zone).toInstant().toEpochMilli();
+		long start = LocalDate.of(2016, 10, 16).atStartOfDay(zone).toInstant().toEpochMilli();
+		long next = LocalDate.of(2016, 10, 17).atStartOfDay(zone).toInstant().toEpochMilli();
+		assertEquals(start, days.startOfDay(noon));
+		assertEquals(next, days.nextDayStart(noon));
+		assertEquals(23L * 60 * 60 * 1000, next - start);
+		assertEquals(start, days.startOfDay(next - 1));
+		assertEquals(1, days.daysBetween(noon, next));
+
+		long winter = ZonedDateTime.of(2016, 7, 1, 23, 59, 0, 0, zone).toInstant().toEpochMilli();
+		assertEquals(LocalDate.of(2016, 7, 1).atStartOfDay(zone).toInstant().toEpochMilli(), days.startOfDay(winter));
+	}
+
+}